@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.service.orchestration.ClockService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Processes received messages right on the netty event loop of the client, without a hand-off to another thread.
+ * Gives the lower bound of the end-to-end latency, but slow processing delays reading of all the channels of the event loop.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${test-run.msg-processing.mode:QUEUED}'=='INLINE'")
+public class InlineReceivedMsgProcessor implements ReceivedMsgProcessor {
+
+    private final ClockService clockService;
+
+    @Override
+    public void processIncomingMessage(MqttClient client, MqttPublishMessage message, BiConsumer<MqttPublishMessage, Long> msgProcessor) {
+        try {
+            msgProcessor.accept(message, clockService.currentTimestamp());
+        } catch (Exception e) {
+            log.warn("Failed to process message", e);
+        } finally {
+            message.payload().release();
+        }
+    }
+
+    @Override
+    public List<Integer> getQueueSizes() {
+        return Collections.emptyList();
+    }
+}
@@ -15,7 +15,6 @@
  */
 package org.thingsboard.mqtt.broker.client.mqtt;
 
-import com.google.common.collect.ImmutableSet;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
@@ -28,6 +27,7 @@ import io.netty.handler.codec.mqtt.MqttFixedHeader;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
 import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttProperties;
 import io.netty.handler.codec.mqtt.MqttPubAckMessage;
 import io.netty.handler.codec.mqtt.MqttPubReplyMessageVariableHeader;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
@@ -38,17 +38,34 @@ import io.netty.handler.codec.mqtt.MqttUnsubAckMessage;
 import io.netty.util.CharsetUtil;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
 @Slf4j
 final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage> {
 
     private final MqttClientImpl client;
     private final ReceivedMsgProcessor receivedMsgProcessor;
     private final ConnectCallback connectCallback;
+    private final MqttTopicAliases topicAliases;
+    private final MqttReadPacer readPacer;
+    private final boolean coalesceAckFlushes;
+
+    // acknowledgements written during the current read that are flushed when the read is complete
+    private boolean ackFlushPending;
+    // messages of a client are processed by one thread at a time, so the matched subscriptions are collected into the same list
+    private final List<MqttSubscription> matchedSubscriptions = new ArrayList<>();
+    private final BiConsumer<MqttPublishMessage, Long> handlersInvoker = this::invokeHandlers;
 
-    MqttChannelHandler(MqttClientImpl client, ConnectCallback connectCallback, ReceivedMsgProcessor receivedMsgProcessor) {
+    MqttChannelHandler(MqttClientImpl client, ConnectCallback connectCallback, ReceivedMsgProcessor receivedMsgProcessor, MqttTopicAliases topicAliases) {
         this.client = client;
         this.receivedMsgProcessor = receivedMsgProcessor;
         this.connectCallback = connectCallback;
+        this.topicAliases = topicAliases;
+        double maxReceiveRate = client.getClientConfig().getMaxReceiveRate();
+        this.readPacer = maxReceiveRate > 0 ? new MqttReadPacer(client, maxReceiveRate) : null;
+        this.coalesceAckFlushes = client.getClientConfig().isCoalesceAckFlushes();
     }
 
     @Override
@@ -81,6 +98,15 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
         }
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (ackFlushPending) {
+            ackFlushPending = false;
+            ctx.channel().flush();
+        }
+        super.channelReadComplete(ctx);
+    }
+
     @Override
     public void channelActive(ChannelHandlerContext ctx) throws Exception {
         super.channelActive(ctx);
@@ -110,40 +136,65 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
         ctx.channel().writeAndFlush(new MqttConnectMessage(fixedHeader, variableHeader, payload));
     }
 
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            this.client.drainQueuedPublishes();
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        if (readPacer != null) {
+            readPacer.onChannelInactive();
+        }
         super.channelInactive(ctx);
     }
 
-    private void processIncomingMessage(MqttPublishMessage message) {
-        receivedMsgProcessor.processIncomingMessage(message, this::invokeHandlers);
+    private void processIncomingMessage(Channel channel, MqttPublishMessage message) {
+        if (readPacer != null) {
+            readPacer.onMessage(channel);
+        }
+        receivedMsgProcessor.processIncomingMessage(client, message, handlersInvoker);
     }
 
     private void invokeHandlers(MqttPublishMessage message, long receivedTime) {
+        String topicName = message.variableHeader().topicName();
         boolean handlerInvoked = false;
-        for (MqttSubscription subscription : ImmutableSet.copyOf(this.client.getSubscriptions().values())) {
-            if (subscription.matches(message.variableHeader().topicName())) {
-                if (subscription.isOnce() && subscription.isCalled()) {
-                    continue;
-                }
-                message.payload().markReaderIndex();
-                subscription.setCalled(true);
-                subscription.getHandler().onMessage(message.variableHeader().topicName(), message.payload(), receivedTime);
-                if (subscription.isOnce()) {
-                    this.client.off(subscription.getTopic(), subscription.getHandler());
-                }
-                message.payload().resetReaderIndex();
-                handlerInvoked = true;
+        matchedSubscriptions.clear();
+        this.client.getSubscriptions().collectMatching(topicName, matchedSubscriptions);
+        for (int i = 0; i < matchedSubscriptions.size(); i++) {
+            MqttSubscription subscription = matchedSubscriptions.get(i);
+            if (subscription.isOnce() && subscription.isCalled()) {
+                continue;
             }
+            message.payload().markReaderIndex();
+            subscription.setCalled(true);
+            subscription.getHandler().onMessage(topicName, message.payload(), receivedTime);
+            if (subscription.isOnce()) {
+                this.client.off(subscription.getTopic(), subscription.getHandler());
+            }
+            message.payload().resetReaderIndex();
+            handlerInvoked = true;
         }
+        matchedSubscriptions.clear();
         if (!handlerInvoked && client.getDefaultHandler() != null) {
-            client.getDefaultHandler().onMessage(message.variableHeader().topicName(), message.payload(), receivedTime);
+            client.getDefaultHandler().onMessage(topicName, message.payload(), receivedTime);
         }
     }
 
     private void handleConack(Channel channel, MqttConnAckMessage message) {
         switch (message.variableHeader().connectReturnCode()) {
             case CONNECTION_ACCEPTED:
+                MqttProperties.MqttProperty<?> receiveMaximum = message.variableHeader().properties()
+                        .getProperty(MqttProperties.MqttPropertyType.RECEIVE_MAXIMUM.value());
+                this.client.setServerReceiveMaximum(receiveMaximum != null ? (Integer) receiveMaximum.value() : MqttClientImpl.DEFAULT_RECEIVE_MAXIMUM);
+                if (this.topicAliases != null) {
+                    MqttProperties.MqttProperty<?> topicAliasMaximum = message.variableHeader().properties()
+                            .getProperty(MqttProperties.MqttPropertyType.TOPIC_ALIAS_MAXIMUM.value());
+                    this.topicAliases.setMaximum(topicAliasMaximum != null ? (Integer) topicAliasMaximum.value() : 0);
+                }
                 this.connectCallback.onSuccess(new MqttConnectResult(true, MqttConnectReturnCode.CONNECTION_ACCEPTED, channel.closeFuture()));
 
                 this.client.getPendingSubscriptions().entrySet().stream().filter((e) -> !e.getValue().isSent()).forEach((e) -> {
@@ -174,6 +225,7 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
         if (pendingSubscription == null) {
             return;
         }
+        this.client.releasePacketId(message.variableHeader().messageId());
         pendingSubscription.onSubackReceived();
         for (MqttPendingSubscription.MqttPendingHandler handler : pendingSubscription.getHandlers()) {
             MqttSubscription subscription = new MqttSubscription(pendingSubscription.getTopic(), handler.getHandler(), handler.isOnce());
@@ -190,15 +242,15 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
     private void handlePublish(Channel channel, MqttPublishMessage message) {
         switch (message.fixedHeader().qosLevel()) {
             case AT_MOST_ONCE:
-                processIncomingMessage(message);
+                processIncomingMessage(channel, message);
                 break;
 
             case AT_LEAST_ONCE:
-                processIncomingMessage(message);
+                processIncomingMessage(channel, message);
                 if (message.variableHeader().packetId() != -1) {
                     MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0);
                     MqttMessageIdVariableHeader variableHeader = MqttMessageIdVariableHeader.from(message.variableHeader().packetId());
-                    channel.writeAndFlush(new MqttPubAckMessage(fixedHeader, variableHeader));
+                    writeAck(channel, new MqttPubAckMessage(fixedHeader, variableHeader));
                 }
                 break;
 
@@ -216,7 +268,7 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
 
                     this.client.getQos2PendingIncomingPublishes().put(message.variableHeader().packetId(), incomingQos2Publish);
 
-                    channel.writeAndFlush(pubrecMessage);
+                    writeAck(channel, pubrecMessage);
                 }
                 break;
         }
@@ -231,53 +283,82 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
         this.client.getServerSubscriptions().remove(unsubscription.getTopic());
         unsubscription.getFuture().setSuccess(null);
         this.client.getPendingServerUnsubscribes().remove(message.variableHeader().messageId());
+        this.client.releasePacketId(message.variableHeader().messageId());
     }
 
     private void handlePuback(MqttPubAckMessage message) {
-        MqttPendingPublish pendingPublish = this.client.getPendingPublishes().remove(message.variableHeader().messageId());
+        MqttPendingPublish pendingPublish = this.client.removePendingPublish(message.variableHeader().messageId());
         if (pendingPublish == null) {
             return;
         }
+        onPublishAcknowledged(pendingPublish);
         pendingPublish.getCallback().onSuccess();
         pendingPublish.onPubackReceived();
+        this.client.drainQueuedPublishes();
+    }
+
+    private void onPublishAcknowledged(MqttPendingPublish pendingPublish) {
+        MqttPublishStageStats stageStats = this.client.getClientConfig().getPublishStageStats();
+        if (stageStats != null && pendingPublish.getSocketWriteNanos() > 0) {
+            stageStats.onAcknowledged(System.nanoTime() - pendingPublish.getSocketWriteNanos());
+            pendingPublish.setSocketWriteNanos(0);
+        }
     }
 
     private void handlePubrec(Channel channel, MqttMessage message) {
         MqttPubReplyMessageVariableHeader variableHeader = (MqttPubReplyMessageVariableHeader) message.variableHeader();
         int messageId = variableHeader.messageId();
         MqttPendingPublish pendingPublish = this.client.getPendingPublishes().get(messageId);
+        if (pendingPublish == null) {
+            return;
+        }
+        onPublishAcknowledged(pendingPublish);
         pendingPublish.onPubackReceived();
 
         if (variableHeader.reasonCode() == MqttReasonCodes.PubRec.QUOTA_EXCEEDED.byteValue()) {
             pendingPublish.getCallback().onFailure(new RuntimeException("rate limits detected"));
-            this.client.getPendingPublishes().remove(messageId);
+            this.client.removePendingPublish(messageId);
+            this.client.drainQueuedPublishes();
             return;
         }
 
         MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBREL, false, MqttQoS.AT_LEAST_ONCE, false, 0);
         MqttMessage pubrelMessage = new MqttMessage(fixedHeader, variableHeader);
-        channel.writeAndFlush(pubrelMessage);
+        writeAck(channel, pubrelMessage);
 
         pendingPublish.setPubrelMessage(pubrelMessage);
-        pendingPublish.startPubrelRetransmissionTimer(this.client.getEventLoop().next(), this.client::sendAndFlushPacket);
+        this.client.startPubrelRetransmissionTimer(pendingPublish);
     }
 
     private void handlePubrel(Channel channel, MqttMessage message) {
         if (this.client.getQos2PendingIncomingPublishes().containsKey(((MqttMessageIdVariableHeader) message.variableHeader()).messageId())) {
             MqttIncomingQos2Publish incomingQos2Publish = this.client.getQos2PendingIncomingPublishes().get(((MqttMessageIdVariableHeader) message.variableHeader()).messageId());
-            this.processIncomingMessage(incomingQos2Publish.getIncomingPublish());
+            this.processIncomingMessage(channel, incomingQos2Publish.getIncomingPublish());
             this.client.getQos2PendingIncomingPublishes().remove(incomingQos2Publish.getIncomingPublish().variableHeader().packetId());
         }
         MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBCOMP, false, MqttQoS.AT_MOST_ONCE, false, 0);
         MqttMessageIdVariableHeader variableHeader = MqttMessageIdVariableHeader.from(((MqttMessageIdVariableHeader) message.variableHeader()).messageId());
-        channel.writeAndFlush(new MqttMessage(fixedHeader, variableHeader));
+        writeAck(channel, new MqttMessage(fixedHeader, variableHeader));
+    }
+
+    private void writeAck(Channel channel, MqttMessage ack) {
+        if (coalesceAckFlushes) {
+            channel.write(ack);
+            ackFlushPending = true;
+        } else {
+            channel.writeAndFlush(ack);
+        }
     }
 
     private void handlePubcomp(MqttMessage message) {
         MqttMessageIdVariableHeader variableHeader = (MqttMessageIdVariableHeader) message.variableHeader();
         MqttPendingPublish pendingPublish = this.client.getPendingPublishes().get(variableHeader.messageId());
+        if (pendingPublish == null) {
+            return;
+        }
         pendingPublish.getCallback().onSuccess();
-        this.client.getPendingPublishes().remove(variableHeader.messageId());
+        this.client.removePendingPublish(variableHeader.messageId());
         pendingPublish.onPubcompReceived();
+        this.client.drainQueuedPublishes();
     }
 }
@@ -17,7 +17,6 @@ package org.thingsboard.mqtt.broker.client.mqtt;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.handler.codec.mqtt.MqttQoS;
@@ -75,6 +74,12 @@ public interface MqttClient {
      */
     void setEventLoop(EventLoopGroup eventLoop);
 
+    /**
+     * Retrieve the netty {@link Channel} of the current connection
+     * @return The channel, or null if the client was never connected
+     */
+    Channel getChannel();
+
     /**
      * Subscribe on the given topic. When a message is received, MqttClient will invoke the {@link MqttHandler#onMessage(String, ByteBuf)} function of the given handler
      *
@@ -140,7 +145,7 @@ public interface MqttClient {
      * @param payload The payload to send
      * @return A future which will be completed when the message is sent out of the MqttClient
      */
-    ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback);
+    Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback);
 
     /**
      * Publish a message to the given payload, using the given qos
@@ -149,7 +154,7 @@ public interface MqttClient {
      * @param qos The qos to use while publishing
      * @return A future which will be completed when the message is delivered to the server
      */
-    ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos);
+    Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos);
 
     /**
      * Publish a message to the given payload, using optional retain
@@ -158,7 +163,7 @@ public interface MqttClient {
      * @param retain true if you want to retain the message on the server, false otherwise
      * @return A future which will be completed when the message is sent out of the MqttClient
      */
-    ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback, boolean retain);
+    Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, boolean retain);
 
     /**
      * Publish a message to the given payload, using the given qos and optional retain
@@ -168,7 +173,71 @@ public interface MqttClient {
      * @param retain true if you want to retain the message on the server, false otherwise
      * @return A future which will be completed when the message is delivered to the server
      */
-    ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain);
+    Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain);
+
+    /**
+     * Publish a message to the given payload, using the given qos and optional retain.
+     * When flush is false the message is only written to the outbound buffer, call {@link #flush()} to send it out
+     * @param topic The topic to publish to
+     * @param payload The payload to send
+     * @param qos The qos to use while publishing
+     * @param retain true if you want to retain the message on the server, false otherwise
+     * @param flush true if the channel should be flushed after the message is written
+     * @return A future which will be completed when the message is delivered to the server
+     */
+    Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain, boolean flush);
+
+    /**
+     * Publish a message to the pre-encoded topic. If the pre-encoded publish is enabled in the config the topic is copied
+     * into the packet as is, otherwise the message is encoded as a regular publish
+     * @param encodedTopic The topic to publish to, see {@link #encodeTopic(String, byte[])}
+     * @param payload The payload to send
+     * @param qos The qos to use while publishing
+     * @param retain true if you want to retain the message on the server, false otherwise
+     * @param flush true if the channel should be flushed after the message is written
+     * @return A future which will be completed when the message is delivered to the server
+     */
+    Future<Void> publish(MqttEncodedTopic encodedTopic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain, boolean flush);
+
+    /**
+     * Encode the topic for the protocol version of this client once, so that it can be reused for every publish
+     * @param topic The topic to publish to
+     * @param topicBytes UTF-8 bytes of the topic, null to encode them from the topic
+     * @return The encoded topic
+     */
+    MqttEncodedTopic encodeTopic(String topic, byte[] topicBytes);
+
+    /**
+     * Check if the in-flight window is full, i.e. the number of unacknowledged QoS 1/2 publishes reached the limit
+     * or the channel is not writable
+     * @return true if a new publish would exceed the window
+     */
+    boolean isInFlightWindowFull();
+
+    /**
+     * Stop reading from the broker until {@link #resumeReading(ReadPauseReason)} is called for this and every other active reason,
+     * so that TCP pushes back on the broker
+     */
+    void pauseReading(ReadPauseReason reason);
+
+    void resumeReading(ReadPauseReason reason);
+
+    boolean isReadPaused(ReadPauseReason reason);
+
+    /**
+     * @return total time in nanoseconds reading was paused for the reason, including the current pause
+     */
+    long getReadPausedNanos(ReadPauseReason reason);
+
+    /**
+     * @return number of times reading was paused for the reason
+     */
+    int getReadPauses(ReadPauseReason reason);
+
+    /**
+     * Flush the messages written with {@link #publish(String, ByteBuf, BasicCallback, MqttQoS, boolean, boolean)}
+     */
+    void flush();
 
     /**
      * Retrieve the MqttClient configuration
@@ -19,6 +19,7 @@ import io.netty.channel.Channel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.mqtt.MqttVersion;
 import io.netty.handler.ssl.SslContext;
+import io.netty.util.Timer;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -42,6 +43,17 @@ public final class MqttClientConfig {
     private boolean reconnect = true;
     private long reconnectDelay = 1L;
     private int maxBytesInMessage = 8092;
+    private int flushConsolidationAfterFlushes = 0;
+    private int maxInFlightPublishes = 0;
+    private int maxQueuedPublishes = 0;
+    @Nullable private MqttClientStats clientStats;
+    @Nullable private MqttPublishStageStats publishStageStats;
+    @Nullable private Timer retransmissionTimer;
+    private long retransmissionTimeoutMs = 0;
+    private boolean preEncodedPublish = false;
+    private boolean topicAliasEnabled = false;
+    private double maxReceiveRate = 0;
+    private boolean coalesceAckFlushes = false;
 
     public MqttClientConfig() {
         this(null);
@@ -182,4 +194,164 @@ public final class MqttClientConfig {
         }
         this.maxBytesInMessage = maxBytesInMessage;
     }
+
+    public int getFlushConsolidationAfterFlushes() {
+        return flushConsolidationAfterFlushes;
+    }
+
+    /**
+     * Enables a {@link io.netty.handler.flush.FlushConsolidationHandler} that flushes after the given number of flushes
+     * or when the event loop has no more work. Defaults to 0 which disables flush consolidation.
+     *
+     * @param flushConsolidationAfterFlushes
+     * @throws IllegalArgumentException if flushConsolidationAfterFlushes is negative.
+     */
+    public void setFlushConsolidationAfterFlushes(int flushConsolidationAfterFlushes) {
+        if (flushConsolidationAfterFlushes < 0) {
+            throw new IllegalArgumentException("flushConsolidationAfterFlushes must be >= 0");
+        }
+        this.flushConsolidationAfterFlushes = flushConsolidationAfterFlushes;
+    }
+
+    public int getMaxInFlightPublishes() {
+        return maxInFlightPublishes;
+    }
+
+    /**
+     * Limits the number of unacknowledged QoS 1/2 publishes. The limit never exceeds the Receive Maximum sent by the
+     * broker in CONNACK. Defaults to 0 which means the Receive Maximum is used as is.
+     *
+     * @param maxInFlightPublishes
+     * @throws IllegalArgumentException if maxInFlightPublishes is negative.
+     */
+    public void setMaxInFlightPublishes(int maxInFlightPublishes) {
+        if (maxInFlightPublishes < 0) {
+            throw new IllegalArgumentException("maxInFlightPublishes must be >= 0");
+        }
+        this.maxInFlightPublishes = maxInFlightPublishes;
+    }
+
+    public int getMaxQueuedPublishes() {
+        return maxQueuedPublishes;
+    }
+
+    /**
+     * Number of publishes that are queued in the client while the in-flight window is full, they are sent as soon as
+     * acknowledgements free the window. Publishes beyond the queue fail with {@link PublishWindowFullException}.
+     * Defaults to 0 which disables the queue, in that case publishes are written regardless of the window.
+     *
+     * @param maxQueuedPublishes
+     * @throws IllegalArgumentException if maxQueuedPublishes is negative.
+     */
+    public void setMaxQueuedPublishes(int maxQueuedPublishes) {
+        if (maxQueuedPublishes < 0) {
+            throw new IllegalArgumentException("maxQueuedPublishes must be >= 0");
+        }
+        this.maxQueuedPublishes = maxQueuedPublishes;
+    }
+
+    @Nullable
+    public MqttClientStats getClientStats() {
+        return clientStats;
+    }
+
+    public void setClientStats(@Nullable MqttClientStats clientStats) {
+        this.clientStats = clientStats;
+    }
+
+    @Nullable
+    public Timer getRetransmissionTimer() {
+        return retransmissionTimer;
+    }
+
+    /**
+     * Timer that drives the retransmission of unacknowledged PUBLISH and PUBREL packets.
+     * It is meant to be shared by all the clients, retransmission is disabled while it is not set.
+     *
+     * @param retransmissionTimer
+     */
+    public void setRetransmissionTimer(@Nullable Timer retransmissionTimer) {
+        this.retransmissionTimer = retransmissionTimer;
+    }
+
+    public long getRetransmissionTimeoutMs() {
+        return retransmissionTimeoutMs;
+    }
+
+    /**
+     * Time to wait for an acknowledgement before the first retransmission, it doubles on every next one.
+     * Defaults to 0 which disables retransmission.
+     *
+     * @param retransmissionTimeoutMs
+     * @throws IllegalArgumentException if retransmissionTimeoutMs is negative.
+     */
+    public void setRetransmissionTimeoutMs(long retransmissionTimeoutMs) {
+        if (retransmissionTimeoutMs < 0) {
+            throw new IllegalArgumentException("retransmissionTimeoutMs must be >= 0");
+        }
+        this.retransmissionTimeoutMs = retransmissionTimeoutMs;
+    }
+
+    public boolean isRetransmissionEnabled() {
+        return retransmissionTimer != null && retransmissionTimeoutMs > 0;
+    }
+
+    public boolean isPreEncodedPublish() {
+        return preEncodedPublish;
+    }
+
+    /**
+     * If true, publishes to a {@link MqttEncodedTopic} are written by the {@link MqttPreEncodedPublishEncoder}
+     * that copies the cached topic instead of encoding it per message
+     */
+    public void setPreEncodedPublish(boolean preEncodedPublish) {
+        this.preEncodedPublish = preEncodedPublish;
+    }
+
+    public boolean isTopicAliasEnabled() {
+        return topicAliasEnabled;
+    }
+
+    /**
+     * If true, publishes to a {@link MqttEncodedTopic} use MQTT 5 topic aliases up to the Topic Alias Maximum of the broker.
+     * Implies the pre-encoded publish path
+     */
+    public void setTopicAliasEnabled(boolean topicAliasEnabled) {
+        this.topicAliasEnabled = topicAliasEnabled;
+    }
+
+    public double getMaxReceiveRate() {
+        return maxReceiveRate;
+    }
+
+    /**
+     * Max number of received messages per second, reading from the broker is paused while the client is ahead of this rate. 0 means no limit
+     */
+    public void setMaxReceiveRate(double maxReceiveRate) {
+        this.maxReceiveRate = maxReceiveRate;
+    }
+
+    public boolean isCoalesceAckFlushes() {
+        return coalesceAckFlushes;
+    }
+
+    /**
+     * If true, PUBACK/PUBREC/PUBREL/PUBCOMP written in response to received packets are not flushed one by one,
+     * but once when the read of the socket is complete
+     */
+    public void setCoalesceAckFlushes(boolean coalesceAckFlushes) {
+        this.coalesceAckFlushes = coalesceAckFlushes;
+    }
+
+    @Nullable
+    public MqttPublishStageStats getPublishStageStats() {
+        return publishStageStats;
+    }
+
+    /**
+     * Stats of the pipeline-to-socket and socket-to-acknowledgement latency of publishes, null disables the timestamping
+     */
+    public void setPublishStageStats(@Nullable MqttPublishStageStats publishStageStats) {
+        this.publishStageStats = publishStageStats;
+    }
 }
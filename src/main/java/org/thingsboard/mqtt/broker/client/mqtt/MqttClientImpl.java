@@ -16,13 +16,13 @@
 package org.thingsboard.mqtt.broker.client.mqtt;
 
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableSet;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
@@ -40,15 +40,19 @@ import io.netty.handler.codec.mqtt.MqttSubscribePayload;
 import io.netty.handler.codec.mqtt.MqttTopicSubscription;
 import io.netty.handler.codec.mqtt.MqttUnsubscribeMessage;
 import io.netty.handler.codec.mqtt.MqttUnsubscribePayload;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.concurrent.DefaultPromise;
 import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ImmediateEventExecutor;
 import io.netty.util.concurrent.Promise;
 import lombok.extern.slf4j.Slf4j;
 import org.thingsboard.mqtt.broker.util.BasicCallback;
 
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
@@ -57,7 +61,6 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents an MqttClientImpl connected to a single MQTT server. Will try to keep the connection going at all times
@@ -66,15 +69,18 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Slf4j
 final class MqttClientImpl implements MqttClient {
 
+    static final int DEFAULT_RECEIVE_MAXIMUM = 65535;
+
     private final Set<String> serverSubscriptions = new HashSet<>();
     private final ConcurrentMap<Integer, MqttPendingUnsubscription> pendingServerUnsubscribes = new ConcurrentHashMap<>();
     private final ConcurrentMap<Integer, MqttIncomingQos2Publish> qos2PendingIncomingPublishes = new ConcurrentHashMap<>();
     private final ConcurrentMap<Integer, MqttPendingPublish> pendingPublishes = new ConcurrentHashMap<>();
-    private final HashMultimap<String, MqttSubscription> subscriptions = HashMultimap.create();
+    private final MqttSubscriptions subscriptions = new MqttSubscriptions();
     private final ConcurrentMap<Integer, MqttPendingSubscription> pendingSubscriptions = new ConcurrentHashMap<>();
     private final Set<String> pendingSubscribeTopics = new HashSet<>();
     private final HashMultimap<MqttHandler, MqttSubscription> handlerToSubscribtion = HashMultimap.create();
-    private final AtomicInteger nextMessageId = new AtomicInteger(1);
+    private final MqttPacketIdAllocator packetIdAllocator = new MqttPacketIdAllocator();
+    private final Deque<MqttQueuedPublish> queuedPublishes = new ArrayDeque<>();
 
     private final MqttClientConfig clientConfig;
     private final ReceivedMsgProcessor receivedMsgProcessor;
@@ -84,6 +90,11 @@ final class MqttClientImpl implements MqttClient {
     private EventLoopGroup eventLoop;
 
     private volatile Channel channel;
+    private volatile int inFlightLimit = DEFAULT_RECEIVE_MAXIMUM;
+
+    // changed on the event loop of the channel only
+    private final ReadPause[] readPauses = createReadPauses();
+    private int activeReadPauses;
 
     private volatile boolean disconnected = false;
     private volatile boolean reconnect = false;
@@ -165,9 +176,14 @@ final class MqttClientImpl implements MqttClient {
                     subscriptions.clear();
                     pendingServerUnsubscribes.clear();
                     qos2PendingIncomingPublishes.clear();
+                    pendingPublishes.values().forEach(MqttPendingPublish::onChannelClosed);
                     pendingPublishes.clear();
+                    failQueuedPublishes(e);
                     pendingSubscribeTopics.clear();
                     handlerToSubscribtion.clear();
+                    packetIdAllocator.releaseAll();
+                    // a new channel reads from the start
+                    endReadPauses();
                     try {
                         scheduleConnectIfRequired(connectCallback, host, port, true);
                     } catch (Exception exception) {
@@ -235,6 +251,16 @@ final class MqttClientImpl implements MqttClient {
         this.eventLoop = eventLoop;
     }
 
+    /**
+     * Retrieve the netty {@link Channel} of the current connection
+     *
+     * @return The channel, or null if the client was never connected
+     */
+    @Override
+    public Channel getChannel() {
+        return channel;
+    }
+
     /**
      * Subscribe on the given topic. When a message is received, MqttClient will invoke the {@link MqttHandler#onMessage(String, ByteBuf, long)} function of the given handler
      *
@@ -316,7 +342,7 @@ final class MqttClientImpl implements MqttClient {
     @Override
     public Future<Void> off(String topic) {
         Promise<Void> future = new DefaultPromise<>(this.eventLoop.next());
-        ImmutableSet<MqttSubscription> subscriptions = ImmutableSet.copyOf(this.subscriptions.get(topic));
+        Set<MqttSubscription> subscriptions = this.subscriptions.get(topic);
         for (MqttSubscription subscription : subscriptions) {
             for (MqttSubscription handSub : this.handlerToSubscribtion.get(subscription.getHandler())) {
                 this.subscriptions.remove(topic, handSub);
@@ -335,7 +361,7 @@ final class MqttClientImpl implements MqttClient {
      * @return A future which will be completed when the message is sent out of the MqttClient
      */
     @Override
-    public ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback) {
+    public Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback) {
         return publish(topic, payload, callback, MqttQoS.AT_MOST_ONCE, false);
     }
 
@@ -348,7 +374,7 @@ final class MqttClientImpl implements MqttClient {
      * @return A future which will be completed when the message is delivered to the server
      */
     @Override
-    public ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos) {
+    public Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos) {
         return publish(topic, payload, callback, qos, false);
     }
 
@@ -361,7 +387,7 @@ final class MqttClientImpl implements MqttClient {
      * @return A future which will be completed when the message is sent out of the MqttClient
      */
     @Override
-    public ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback, boolean retain) {
+    public Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, boolean retain) {
         return publish(topic, payload, callback, MqttQoS.AT_MOST_ONCE, retain);
     }
 
@@ -375,30 +401,234 @@ final class MqttClientImpl implements MqttClient {
      * @return A future which will be completed when the message is delivered to the server
      */
     @Override
-    public ChannelFuture publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain) {
-        MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, retain, 0);
-        MqttPublishVariableHeader variableHeader = new MqttPublishVariableHeader(topic, getNewMessageId().messageId());
-        MqttPublishMessage message = new MqttPublishMessage(fixedHeader, variableHeader, payload);
-        MqttPendingPublish pendingPublish = new MqttPendingPublish(variableHeader.packetId(), callback, qos);
-        this.pendingPublishes.put(pendingPublish.getMessageId(), pendingPublish);
-        ChannelFuture channelFuture = this.sendAndFlushPacket(message);
-
-        if (channelFuture != null) {
-            pendingPublish.setSent(true);
-            if (channelFuture.cause() != null) {
-                callback.onFailure(channelFuture.cause());
-                return channelFuture;
+    public Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain) {
+        return publish(topic, payload, callback, qos, retain, true);
+    }
+
+    /**
+     * Publish a message to the given payload, using the given qos and optional retain.
+     * When flush is false the message is only written to the outbound buffer, call {@link #flush()} to send it out
+     *
+     * @param topic   The topic to publish to
+     * @param payload The payload to send
+     * @param qos     The qos to use while publishing
+     * @param retain  true if you want to retain the message on the server, false otherwise
+     * @param flush   true if the channel should be flushed after the message is written
+     * @return A future which will be completed when the message is delivered to the server
+     */
+    @Override
+    public Future<Void> publish(String topic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain, boolean flush) {
+        return publish(topic, null, payload, callback, qos, retain, flush);
+    }
+
+    @Override
+    public Future<Void> publish(MqttEncodedTopic encodedTopic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain, boolean flush) {
+        boolean preEncoded = clientConfig.isPreEncodedPublish() || clientConfig.isTopicAliasEnabled();
+        return publish(encodedTopic.getTopic(), preEncoded ? encodedTopic : null, payload, callback, qos, retain, flush);
+    }
+
+    @Override
+    public MqttEncodedTopic encodeTopic(String topic, byte[] topicBytes) {
+        return MqttEncodedTopic.of(topic, topicBytes, clientConfig.getProtocolVersion());
+    }
+
+    private Future<Void> publish(String topic, MqttEncodedTopic encodedTopic, ByteBuf payload, BasicCallback callback, MqttQoS qos, boolean retain, boolean flush) {
+        Channel channel = this.channel;
+        if (channel == null) {
+            payload.release();
+            return ImmediateEventExecutor.INSTANCE.newFailedFuture(new ChannelClosedException("Channel is not connected!"));
+        }
+        int packetId = -1;
+        if (qos != MqttQoS.AT_MOST_ONCE) {
+            packetId = packetIdAllocator.allocate();
+            if (packetId == MqttPacketIdAllocator.NO_FREE_ID) {
+                payload.release();
+                return channel.newFailedFuture(new PublishWindowFullException("All packet identifiers are in flight!"));
+            }
+        }
+        MqttPublishMessage message;
+        if (encodedTopic != null) {
+            message = new MqttPreEncodedPublishMessage(encodedTopic, qos, retain, packetId, payload);
+        } else {
+            MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, retain, 0);
+            MqttPublishVariableHeader variableHeader = new MqttPublishVariableHeader(topic, packetId);
+            message = new MqttPublishMessage(fixedHeader, variableHeader, payload);
+        }
+        MqttPendingPublish pendingPublish = new MqttPendingPublish(packetId, callback, qos);
+        if (qos != MqttQoS.AT_MOST_ONCE && clientConfig.getMaxQueuedPublishes() > 0) {
+            ChannelFuture queuedFuture = queueIfWindowFull(pendingPublish, message);
+            if (queuedFuture != null) {
+                return queuedFuture;
             }
         }
-        if (pendingPublish.isSent() && pendingPublish.getQos() == MqttQoS.AT_MOST_ONCE) {
-            this.pendingPublishes.remove(pendingPublish.getMessageId());
+        return sendPublish(pendingPublish, message, channel.newPromise(), flush);
+    }
+
+    private ChannelFuture sendPublish(MqttPendingPublish pendingPublish, MqttPublishMessage message, ChannelPromise promise, boolean flush) {
+        BasicCallback callback = pendingPublish.getCallback();
+        boolean retransmit = pendingPublish.getQos() != MqttQoS.AT_MOST_ONCE && clientConfig.isRetransmissionEnabled();
+        if (retransmit) {
+            pendingPublish.setPublishMessage(message.retain());
+        }
+        if (pendingPublish.getQos() != MqttQoS.AT_MOST_ONCE) {
+            this.pendingPublishes.put(pendingPublish.getMessageId(), pendingPublish);
+        }
+        ChannelFuture channelFuture = this.sendPacket(message, promise, flush);
+
+        pendingPublish.setSent(true);
+        if (channelFuture.cause() != null) {
+            removePendingPublish(pendingPublish.getMessageId());
+            pendingPublish.onChannelClosed();
+            callback.onFailure(channelFuture.cause());
+            return channelFuture;
+        }
+        if (retransmit) {
+            startPublishRetransmissionTimer(pendingPublish);
+        }
+        if (pendingPublish.getQos() == MqttQoS.AT_MOST_ONCE) {
             callback.onSuccess();
-        } else if (!pendingPublish.isSent()) {
-            this.pendingPublishes.remove(pendingPublish.getMessageId());
         }
         return channelFuture;
     }
 
+    private ChannelFuture queueIfWindowFull(MqttPendingPublish pendingPublish, MqttPublishMessage message) {
+        Channel channel = this.channel;
+        if (channel == null) {
+            return null;
+        }
+        synchronized (this.queuedPublishes) {
+            if (this.queuedPublishes.isEmpty() && !isInFlightWindowFull()) {
+                return null;
+            }
+            if (this.queuedPublishes.size() >= clientConfig.getMaxQueuedPublishes()) {
+                packetIdAllocator.release(pendingPublish.getMessageId());
+                message.release();
+                return channel.newFailedFuture(new PublishWindowFullException("In-flight window and publish queue are full!"));
+            }
+            ChannelPromise promise = channel.newPromise();
+            this.queuedPublishes.add(new MqttQueuedPublish(pendingPublish, message, promise));
+            return promise;
+        }
+    }
+
+    /**
+     * Sends the queued publishes that fit into the in-flight window. Called when an acknowledgement frees the window
+     * or the channel becomes writable again
+     */
+    void drainQueuedPublishes() {
+        if (clientConfig.getMaxQueuedPublishes() == 0) {
+            return;
+        }
+        boolean written = false;
+        synchronized (this.queuedPublishes) {
+            while (!this.queuedPublishes.isEmpty() && !isInFlightWindowFull()) {
+                MqttQueuedPublish queuedPublish = this.queuedPublishes.poll();
+                sendPublish(queuedPublish.getPendingPublish(), queuedPublish.getMessage(), queuedPublish.getPromise(), false);
+                written = true;
+            }
+        }
+        if (written) {
+            flush();
+        }
+    }
+
+    private void failQueuedPublishes(Throwable cause) {
+        synchronized (this.queuedPublishes) {
+            MqttQueuedPublish queuedPublish;
+            while ((queuedPublish = this.queuedPublishes.poll()) != null) {
+                packetIdAllocator.release(queuedPublish.getPendingPublish().getMessageId());
+                queuedPublish.getMessage().release();
+                queuedPublish.getPromise().tryFailure(cause);
+            }
+        }
+    }
+
+    @Override
+    public boolean isInFlightWindowFull() {
+        Channel channel = this.channel;
+        return this.pendingPublishes.size() >= this.inFlightLimit || (channel != null && !channel.isWritable());
+    }
+
+    @Override
+    public void pauseReading(ReadPauseReason reason) {
+        Channel channel = this.channel;
+        if (channel == null) {
+            return;
+        }
+        if (channel.eventLoop().inEventLoop()) {
+            doPauseReading(channel, reason);
+        } else {
+            channel.eventLoop().execute(() -> doPauseReading(channel, reason));
+        }
+    }
+
+    private void doPauseReading(Channel channel, ReadPauseReason reason) {
+        ReadPause readPause = readPauses[reason.ordinal()];
+        if (readPause.paused || channel != this.channel) {
+            return;
+        }
+        readPause.start();
+        if (activeReadPauses++ == 0) {
+            channel.config().setAutoRead(false);
+        }
+    }
+
+    @Override
+    public void resumeReading(ReadPauseReason reason) {
+        Channel channel = this.channel;
+        if (channel == null) {
+            return;
+        }
+        if (channel.eventLoop().inEventLoop()) {
+            doResumeReading(channel, reason);
+        } else {
+            channel.eventLoop().execute(() -> doResumeReading(channel, reason));
+        }
+    }
+
+    private void doResumeReading(Channel channel, ReadPauseReason reason) {
+        ReadPause readPause = readPauses[reason.ordinal()];
+        if (!readPause.paused || channel != this.channel) {
+            return;
+        }
+        readPause.end();
+        if (--activeReadPauses == 0) {
+            channel.config().setAutoRead(true);
+        }
+    }
+
+    private void endReadPauses() {
+        for (ReadPause readPause : readPauses) {
+            if (readPause.paused) {
+                readPause.end();
+            }
+        }
+        activeReadPauses = 0;
+    }
+
+    @Override
+    public boolean isReadPaused(ReadPauseReason reason) {
+        return readPauses[reason.ordinal()].paused;
+    }
+
+    @Override
+    public long getReadPausedNanos(ReadPauseReason reason) {
+        return readPauses[reason.ordinal()].getPausedNanos();
+    }
+
+    @Override
+    public int getReadPauses(ReadPauseReason reason) {
+        return readPauses[reason.ordinal()].pauses;
+    }
+
+    @Override
+    public void flush() {
+        Channel channel = this.channel;
+        if (channel != null) {
+            channel.flush();
+        }
+    }
+
     /**
      * Retrieve the MqttClient configuration
      *
@@ -442,6 +672,23 @@ final class MqttClientImpl implements MqttClient {
         return reconnect;
     }
 
+    private void startPublishRetransmissionTimer(MqttPendingPublish pendingPublish) {
+        pendingPublish.startPublishRetransmissionTimer(clientConfig.getRetransmissionTimer(), this.channel.eventLoop(),
+                clientConfig.getRetransmissionTimeoutMs(), this::sendAndFlushPacket, clientConfig.getClientStats());
+    }
+
+    void startPubrelRetransmissionTimer(MqttPendingPublish pendingPublish) {
+        if (clientConfig.isRetransmissionEnabled() && this.channel != null) {
+            pendingPublish.startPubrelRetransmissionTimer(clientConfig.getRetransmissionTimer(), this.channel.eventLoop(),
+                    clientConfig.getRetransmissionTimeoutMs(), this::sendAndFlushPacket, clientConfig.getClientStats());
+        }
+    }
+
+    void setServerReceiveMaximum(int receiveMaximum) {
+        int maxInFlightPublishes = clientConfig.getMaxInFlightPublishes();
+        this.inFlightLimit = maxInFlightPublishes > 0 ? Math.min(maxInFlightPublishes, receiveMaximum) : receiveMaximum;
+    }
+
     public void onSuccessfulReconnect() {
         if (clientCallback != null) {
             clientCallback.onSuccessfulReconnect();
@@ -450,20 +697,42 @@ final class MqttClientImpl implements MqttClient {
 
 
     ChannelFuture sendAndFlushPacket(Object message) {
+        return sendPacket(message, true);
+    }
+
+    private ChannelFuture sendPacket(Object message, boolean flush) {
         if (this.channel == null) {
             return null;
         }
+        return sendPacket(message, this.channel.newPromise(), flush);
+    }
+
+    private ChannelFuture sendPacket(Object message, ChannelPromise promise, boolean flush) {
         if (this.channel.isActive()) {
-            return this.channel.writeAndFlush(message);
+            return flush ? this.channel.writeAndFlush(message, promise) : this.channel.write(message, promise);
         }
-        return this.channel.newFailedFuture(new ChannelClosedException("Channel is closed!"));
+        return promise.setFailure(new ChannelClosedException("Channel is closed!"));
+    }
+
+    /**
+     * Removes the pending publish and frees its packet identifier
+     */
+    MqttPendingPublish removePendingPublish(int messageId) {
+        MqttPendingPublish pendingPublish = this.pendingPublishes.remove(messageId);
+        if (pendingPublish != null) {
+            packetIdAllocator.release(messageId);
+        }
+        return pendingPublish;
+    }
+
+    void releasePacketId(int messageId) {
+        packetIdAllocator.release(messageId);
     }
 
     private MqttMessageIdVariableHeader getNewMessageId() {
-        int messageId;
-        synchronized (this.nextMessageId) {
-            this.nextMessageId.compareAndSet(0xffff, 1);
-            messageId = this.nextMessageId.getAndIncrement();
+        int messageId = packetIdAllocator.allocate();
+        if (messageId == MqttPacketIdAllocator.NO_FREE_ID) {
+            return null;
         }
         return MqttMessageIdVariableHeader.from(messageId);
     }
@@ -487,6 +756,10 @@ final class MqttClientImpl implements MqttClient {
         MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.SUBSCRIBE, false, MqttQoS.AT_LEAST_ONCE, false, 0);
         MqttTopicSubscription subscription = new MqttTopicSubscription(topic, qos);
         MqttMessageIdVariableHeader variableHeader = getNewMessageId();
+        if (variableHeader == null) {
+            callback.onFailure(new IllegalStateException("All packet identifiers are in flight!"));
+            return;
+        }
         MqttSubscribePayload payload = new MqttSubscribePayload(Collections.singletonList(subscription));
         MqttSubscribeMessage message = new MqttSubscribeMessage(fixedHeader, variableHeader, payload);
 
@@ -500,9 +773,13 @@ final class MqttClientImpl implements MqttClient {
     }
 
     private void checkSubscribtions(String topic, Promise<Void> promise) {
-        if (!(this.subscriptions.containsKey(topic) && this.subscriptions.get(topic).size() != 0) && this.serverSubscriptions.contains(topic)) {
+        if (!this.subscriptions.hasSubscriptions(topic) && this.serverSubscriptions.contains(topic)) {
             MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.UNSUBSCRIBE, false, MqttQoS.AT_LEAST_ONCE, false, 0);
             MqttMessageIdVariableHeader variableHeader = getNewMessageId();
+            if (variableHeader == null) {
+                promise.setFailure(new IllegalStateException("All packet identifiers are in flight!"));
+                return;
+            }
             MqttUnsubscribePayload payload = new MqttUnsubscribePayload(Collections.singletonList(topic));
             MqttUnsubscribeMessage message = new MqttUnsubscribeMessage(fixedHeader, variableHeader, payload);
 
@@ -520,7 +797,7 @@ final class MqttClientImpl implements MqttClient {
         return pendingSubscriptions;
     }
 
-    HashMultimap<String, MqttSubscription> getSubscriptions() {
+    MqttSubscriptions getSubscriptions() {
         return subscriptions;
     }
 
@@ -570,12 +847,30 @@ final class MqttClientImpl implements MqttClient {
             if (sslContext != null) {
                 ch.pipeline().addLast(sslContext.newHandler(ch.alloc(), host, port));
             }
+            if (clientConfig.getClientStats() != null) {
+                // socket writes are counted at the head, MQTT packets above the TLS handler
+                ch.pipeline().addFirst("flushCounter", new MqttFlushCounterHandler(clientConfig.getClientStats()));
+                ch.pipeline().addLast("packetCounter", new MqttPacketCounterHandler(clientConfig.getClientStats()));
+            }
+            if (clientConfig.getFlushConsolidationAfterFlushes() > 0) {
+                ch.pipeline().addLast("flushConsolidation", new FlushConsolidationHandler(clientConfig.getFlushConsolidationAfterFlushes(), true));
+            }
 
             ch.pipeline().addLast("mqttDecoder", new MqttDecoder(clientConfig.getMaxBytesInMessage(), Integer.MAX_VALUE));
             ch.pipeline().addLast("mqttEncoder", MqttEncoder.INSTANCE);
+            MqttTopicAliases topicAliases = null;
+            if (clientConfig.isTopicAliasEnabled()) {
+                topicAliases = new MqttTopicAliases();
+                ch.pipeline().addLast("mqttPreEncodedPublishEncoder", new MqttPreEncodedPublishEncoder(topicAliases, clientConfig.getClientStats()));
+            } else if (clientConfig.isPreEncodedPublish()) {
+                ch.pipeline().addLast("mqttPreEncodedPublishEncoder", new MqttPreEncodedPublishEncoder(null, null));
+            }
             ch.pipeline().addLast("idleStateHandler", new IdleStateHandler(MqttClientImpl.this.clientConfig.getTimeoutSeconds(), MqttClientImpl.this.clientConfig.getTimeoutSeconds(), 0));
             ch.pipeline().addLast("mqttPingHandler", new MqttPingHandler(MqttClientImpl.this.clientConfig.getTimeoutSeconds()));
-            ch.pipeline().addLast("mqttHandler", new MqttChannelHandler(MqttClientImpl.this, connectCallback, receivedMsgProcessor));
+            ch.pipeline().addLast("mqttHandler", new MqttChannelHandler(MqttClientImpl.this, connectCallback, receivedMsgProcessor, topicAliases));
+            if (clientConfig.getPublishStageStats() != null) {
+                ch.pipeline().addLast("publishTimestamps", new MqttPublishTimestampHandler(MqttClientImpl.this, clientConfig.getPublishStageStats()));
+            }
         }
     }
 
@@ -583,4 +878,34 @@ final class MqttClientImpl implements MqttClient {
         return defaultHandler;
     }
 
+    private static ReadPause[] createReadPauses() {
+        ReadPause[] readPauses = new ReadPause[ReadPauseReason.values().length];
+        for (int i = 0; i < readPauses.length; i++) {
+            readPauses[i] = new ReadPause();
+        }
+        return readPauses;
+    }
+
+    private static class ReadPause {
+        private volatile boolean paused;
+        private volatile long pausedSince;
+        private volatile long pausedNanos;
+        private volatile int pauses;
+
+        void start() {
+            pausedSince = System.nanoTime();
+            pauses++;
+            paused = true;
+        }
+
+        void end() {
+            pausedNanos += System.nanoTime() - pausedSince;
+            paused = false;
+        }
+
+        long getPausedNanos() {
+            long nanos = pausedNanos;
+            return paused ? nanos + System.nanoTime() - pausedSince : nanos;
+        }
+    }
 }
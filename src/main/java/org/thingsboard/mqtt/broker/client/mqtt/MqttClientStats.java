@@ -0,0 +1,79 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters shared by all the clients created by one client factory.
+ */
+public final class MqttClientStats {
+
+    private final LongAdder outboundPackets = new LongAdder();
+    private final LongAdder socketFlushes = new LongAdder();
+    private final LongAdder retransmissions = new LongAdder();
+    private final LongAdder outboundBytes = new LongAdder();
+    private final LongAdder aliasedPublishes = new LongAdder();
+    private final LongAdder topicAliasSavedBytes = new LongAdder();
+
+    void onOutboundPacket() {
+        outboundPackets.increment();
+    }
+
+    void onSocketFlush() {
+        socketFlushes.increment();
+    }
+
+    void onRetransmission() {
+        retransmissions.increment();
+    }
+
+    void onOutboundBytes(long bytes) {
+        outboundBytes.add(bytes);
+    }
+
+    void onAliasedPublish(int savedBytes) {
+        aliasedPublishes.increment();
+        topicAliasSavedBytes.add(savedBytes);
+    }
+
+    public long getAndResetOutboundPackets() {
+        return outboundPackets.sumThenReset();
+    }
+
+    public long getAndResetSocketFlushes() {
+        return socketFlushes.sumThenReset();
+    }
+
+    public long getAndResetRetransmissions() {
+        return retransmissions.sumThenReset();
+    }
+
+    public long getAndResetOutboundBytes() {
+        return outboundBytes.sumThenReset();
+    }
+
+    public long getAndResetAliasedPublishes() {
+        return aliasedPublishes.sumThenReset();
+    }
+
+    /**
+     * @return bytes saved by sending a topic alias instead of the topic
+     */
+    public long getAndResetTopicAliasSavedBytes() {
+        return topicAliasSavedBytes.sumThenReset();
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.handler.codec.mqtt.MqttVersion;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Topic of a publisher encoded once together with the PUBLISH properties, so that the pre-encoded publish path
+ * copies the bytes instead of encoding the topic string and the properties on every message
+ */
+public final class MqttEncodedTopic {
+
+    private static final byte[] NO_PROPERTIES = new byte[0];
+    private static final byte[] EMPTY_PROPERTIES = new byte[]{0};
+
+    private final String topic;
+    private final byte[] topicBlock;
+    private final byte[] propertiesBlock;
+
+    private MqttEncodedTopic(String topic, byte[] topicBlock, byte[] propertiesBlock) {
+        this.topic = topic;
+        this.topicBlock = topicBlock;
+        this.propertiesBlock = propertiesBlock;
+    }
+
+    /**
+     * @param topic      the topic to publish to
+     * @param topicBytes UTF-8 bytes of the topic, encoded from the topic if null
+     * @param version    protocol version of the client, MQTT 5 packets carry a property block
+     */
+    public static MqttEncodedTopic of(String topic, byte[] topicBytes, MqttVersion version) {
+        if (topicBytes == null) {
+            topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        }
+        if (topicBytes.length > 65535) {
+            throw new IllegalArgumentException("Topic is longer than 65535 bytes: " + topic);
+        }
+        byte[] topicBlock = new byte[topicBytes.length + 2];
+        topicBlock[0] = (byte) (topicBytes.length >>> 8);
+        topicBlock[1] = (byte) topicBytes.length;
+        System.arraycopy(topicBytes, 0, topicBlock, 2, topicBytes.length);
+        return new MqttEncodedTopic(topic, topicBlock, version == MqttVersion.MQTT_5 ? EMPTY_PROPERTIES : NO_PROPERTIES);
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return length-prefixed UTF-8 topic
+     */
+    byte[] getTopicBlock() {
+        return topicBlock;
+    }
+
+    /**
+     * @return property length and properties for MQTT 5, empty for older versions
+     */
+    byte[] getPropertiesBlock() {
+        return propertiesBlock;
+    }
+}
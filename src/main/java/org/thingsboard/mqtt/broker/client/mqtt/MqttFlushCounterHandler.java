@@ -0,0 +1,54 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Sits at the head of the pipeline, after the TLS handler on the outbound path, and counts the flushes that actually
+ * reach the socket, so each counted flush corresponds to a write syscall. Also counts the bytes written to the socket.
+ */
+final class MqttFlushCounterHandler extends ChannelOutboundHandlerAdapter {
+
+    private final MqttClientStats clientStats;
+
+    private boolean writesPending;
+
+    MqttFlushCounterHandler(MqttClientStats clientStats) {
+        this.clientStats = clientStats;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        writesPending = true;
+        if (msg instanceof ByteBuf) {
+            clientStats.onOutboundBytes(((ByteBuf) msg).readableBytes());
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        if (writesPending) {
+            writesPending = false;
+            clientStats.onSocketFlush();
+        }
+        ctx.flush();
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+
+/**
+ * Sits right after the MQTT encoders, on the tail side of the TLS handler, and counts the encoded MQTT packets,
+ * so that with TLS the packets are not confused with the TLS records written to the socket.
+ */
+final class MqttPacketCounterHandler extends ChannelOutboundHandlerAdapter {
+
+    private final MqttClientStats clientStats;
+
+    MqttPacketCounterHandler(MqttClientStats clientStats) {
+        this.clientStats = clientStats;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        clientStats.onOutboundPacket();
+        ctx.write(msg, promise);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free allocator of MQTT packet identifiers (1..65535). Identifiers in use are tracked in a bitset,
+ * so an identifier is never handed out again while the packet that holds it is still waiting for an acknowledgement.
+ */
+final class MqttPacketIdAllocator {
+
+    static final int NO_FREE_ID = -1;
+
+    private static final int MAX_ID = 0xffff;
+    private static final int ID_COUNT = MAX_ID + 1;
+
+    private final AtomicLongArray inUse = new AtomicLongArray(ID_COUNT / Long.SIZE);
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final AtomicInteger inUseCount = new AtomicInteger();
+
+    /**
+     * @return a free packet identifier or {@link #NO_FREE_ID} if all identifiers are in flight
+     */
+    int allocate() {
+        if (inUseCount.get() >= MAX_ID) {
+            return NO_FREE_ID;
+        }
+        for (int attempt = 0; attempt < ID_COUNT; attempt++) {
+            int id = nextId.getAndIncrement() & MAX_ID;
+            if (id == 0) {
+                continue;
+            }
+            int wordIdx = id >>> 6;
+            long mask = 1L << (id & 63);
+            long word = inUse.get(wordIdx);
+            while ((word & mask) == 0) {
+                if (inUse.compareAndSet(wordIdx, word, word | mask)) {
+                    inUseCount.incrementAndGet();
+                    return id;
+                }
+                word = inUse.get(wordIdx);
+            }
+        }
+        return NO_FREE_ID;
+    }
+
+    void release(int id) {
+        if (id <= 0 || id > MAX_ID) {
+            return;
+        }
+        int wordIdx = id >>> 6;
+        long mask = 1L << (id & 63);
+        long word = inUse.get(wordIdx);
+        while ((word & mask) != 0) {
+            if (inUse.compareAndSet(wordIdx, word, word & ~mask)) {
+                inUseCount.decrementAndGet();
+                return;
+            }
+            word = inUse.get(wordIdx);
+        }
+    }
+
+    void releaseAll() {
+        for (int i = 0; i < inUse.length(); i++) {
+            long word = inUse.getAndSet(i, 0L);
+            inUseCount.addAndGet(-Long.bitCount(word));
+        }
+    }
+
+    int getInUseCount() {
+        return inUseCount.get();
+    }
+}
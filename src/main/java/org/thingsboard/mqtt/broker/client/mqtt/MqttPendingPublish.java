@@ -15,9 +15,12 @@
  */
 package org.thingsboard.mqtt.broker.client.mqtt;
 
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.EventLoop;
 import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.Timer;
 import org.thingsboard.mqtt.broker.util.BasicCallback;
 
 import java.util.function.Consumer;
@@ -28,7 +31,13 @@ final class MqttPendingPublish {
     private final BasicCallback callback;
     private final MqttQoS qos;
 
+    private long socketWriteNanos;
+
+    private final WheelRetransmissionHandler<MqttPublishMessage> publishRetransmissionHandler = new WheelRetransmissionHandler<>();
+    private final WheelRetransmissionHandler<MqttMessage> pubrelRetransmissionHandler = new WheelRetransmissionHandler<>();
+
     private boolean sent = false;
+    private MqttPublishMessage publishMessage;
 
     MqttPendingPublish(int messageId, BasicCallback callback, MqttQoS qos) {
         this.messageId = messageId;
@@ -58,18 +67,74 @@ final class MqttPendingPublish {
         return qos;
     }
 
-    void startPublishRetransmissionTimer(EventLoop eventLoop, Consumer<Object> sendPacket) {
+    /**
+     * @return when the first send of the PUBLISH was written to the socket, 0 if it is not known
+     */
+    long getSocketWriteNanos() {
+        return socketWriteNanos;
+    }
+
+    void setSocketWriteNanos(long socketWriteNanos) {
+        this.socketWriteNanos = socketWriteNanos;
+    }
+
+    /**
+     * Keeps the message for retransmission, the caller must retain it before it is written
+     */
+    void setPublishMessage(MqttPublishMessage publishMessage) {
+        this.publishMessage = publishMessage;
+        this.publishRetransmissionHandler.setOriginalMessage(publishMessage);
+    }
+
+    void startPublishRetransmissionTimer(Timer timer, EventLoop eventLoop, long timeoutMs, Consumer<Object> sendPacket, MqttClientStats clientStats) {
+        if (this.publishMessage == null) {
+            return;
+        }
+        this.publishRetransmissionHandler.setHandle((fixedHeader, originalMessage) -> {
+            ByteBuf payload = originalMessage.payload().retainedDuplicate();
+            sendPacket.accept(originalMessage instanceof MqttPreEncodedPublishMessage ?
+                    ((MqttPreEncodedPublishMessage) originalMessage).withFixedHeader(fixedHeader, payload) :
+                    new MqttPublishMessage(fixedHeader, originalMessage.variableHeader(), payload));
+            if (clientStats != null) {
+                clientStats.onRetransmission();
+            }
+        });
+        this.publishRetransmissionHandler.start(timer, eventLoop, timeoutMs);
     }
 
     void onPubackReceived() {
+        this.publishRetransmissionHandler.stop();
+        releasePublishMessage();
     }
 
     void setPubrelMessage(MqttMessage pubrelMessage) {
+        this.pubrelRetransmissionHandler.setOriginalMessage(pubrelMessage);
     }
 
-    void startPubrelRetransmissionTimer(EventLoop eventLoop, Consumer<Object> sendPacket) {
+    void startPubrelRetransmissionTimer(Timer timer, EventLoop eventLoop, long timeoutMs, Consumer<Object> sendPacket, MqttClientStats clientStats) {
+        this.pubrelRetransmissionHandler.setHandle((fixedHeader, originalMessage) -> {
+            sendPacket.accept(new MqttMessage(fixedHeader, originalMessage.variableHeader()));
+            if (clientStats != null) {
+                clientStats.onRetransmission();
+            }
+        });
+        this.pubrelRetransmissionHandler.start(timer, eventLoop, timeoutMs);
     }
 
     void onPubcompReceived() {
+        this.pubrelRetransmissionHandler.stop();
+    }
+
+    void onChannelClosed() {
+        this.publishRetransmissionHandler.stop();
+        this.pubrelRetransmissionHandler.stop();
+        releasePublishMessage();
+    }
+
+    private void releasePublishMessage() {
+        if (this.publishMessage != null) {
+            this.publishMessage.release();
+            this.publishMessage = null;
+        }
     }
 }
@@ -0,0 +1,124 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttProperties;
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+/**
+ * Writes {@link MqttPreEncodedPublishMessage}s straight into the outbound buffer: the fixed header, the cached topic,
+ * the packet id, the cached properties and the payload. It sits on the tail side of the MqttEncoder,
+ * every other message is passed on to it. The produced bytes are identical to the ones of the MqttEncoder.
+ * <p>
+ * With topic aliases the first PUBLISH of a topic carries the topic and its alias, the next ones only the alias.
+ * The encoder keeps the aliases of its channel, so every channel has its own encoder.
+ */
+public final class MqttPreEncodedPublishEncoder extends MessageToByteEncoder<MqttPreEncodedPublishMessage> {
+
+    private static final byte[] EMPTY_TOPIC_BLOCK = new byte[]{0, 0};
+    private static final int TOPIC_ALIAS_PROPERTIES_LENGTH = 4;
+
+    private final MqttTopicAliases topicAliases;
+    private final MqttClientStats clientStats;
+
+    MqttPreEncodedPublishEncoder(MqttTopicAliases topicAliases, MqttClientStats clientStats) {
+        super(MqttPreEncodedPublishMessage.class, true);
+        this.topicAliases = topicAliases;
+        this.clientStats = clientStats;
+    }
+
+    @Override
+    protected ByteBuf allocateBuffer(ChannelHandlerContext ctx, MqttPreEncodedPublishMessage msg, boolean preferDirect) {
+        // the alias is not resolved yet, so reserve room for the topic and the alias property
+        int remainingLength = remainingLength(msg, msg.getEncodedTopic().getTopicBlock(), msg.getEncodedTopic().getPropertiesBlock().length)
+                + (topicAliases != null ? TOPIC_ALIAS_PROPERTIES_LENGTH : 0);
+        int size = 1 + variableLengthSize(remainingLength) + remainingLength;
+        return preferDirect ? ctx.alloc().ioBuffer(size) : ctx.alloc().heapBuffer(size);
+    }
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, MqttPreEncodedPublishMessage msg, ByteBuf out) {
+        MqttFixedHeader fixedHeader = msg.fixedHeader();
+        MqttEncodedTopic encodedTopic = msg.getEncodedTopic();
+        int alias = topicAliases != null ? topicAliases.resolve(encodedTopic.getTopic()) : 0;
+        byte[] topicBlock = alias > 0 ? EMPTY_TOPIC_BLOCK : encodedTopic.getTopicBlock();
+        int propertiesLength = alias != 0 ? TOPIC_ALIAS_PROPERTIES_LENGTH : encodedTopic.getPropertiesBlock().length;
+
+        out.writeByte(firstByte(fixedHeader));
+        writeVariableLength(out, remainingLength(msg, topicBlock, propertiesLength));
+        out.writeBytes(topicBlock);
+        if (fixedHeader.qosLevel() != MqttQoS.AT_MOST_ONCE) {
+            out.writeShort(msg.variableHeader().packetId());
+        }
+        if (alias != 0) {
+            out.writeByte(TOPIC_ALIAS_PROPERTIES_LENGTH - 1);
+            out.writeByte(MqttProperties.MqttPropertyType.TOPIC_ALIAS.value());
+            out.writeShort(Math.abs(alias));
+            if (alias > 0 && clientStats != null) {
+                clientStats.onAliasedPublish(encodedTopic.getTopicBlock().length - topicBlock.length
+                        - (TOPIC_ALIAS_PROPERTIES_LENGTH - encodedTopic.getPropertiesBlock().length));
+            }
+        } else {
+            out.writeBytes(encodedTopic.getPropertiesBlock());
+        }
+        ByteBuf payload = msg.payload();
+        out.writeBytes(payload, payload.readerIndex(), payload.readableBytes());
+    }
+
+    private static int remainingLength(MqttPreEncodedPublishMessage msg, byte[] topicBlock, int propertiesLength) {
+        return topicBlock.length
+                + (msg.fixedHeader().qosLevel() != MqttQoS.AT_MOST_ONCE ? 2 : 0)
+                + propertiesLength
+                + msg.payload().readableBytes();
+    }
+
+    private static int firstByte(MqttFixedHeader fixedHeader) {
+        int ret = MqttMessageType.PUBLISH.value() << 4;
+        if (fixedHeader.isDup()) {
+            ret |= 0x08;
+        }
+        ret |= fixedHeader.qosLevel().value() << 1;
+        if (fixedHeader.isRetain()) {
+            ret |= 0x01;
+        }
+        return ret;
+    }
+
+    private static void writeVariableLength(ByteBuf out, int length) {
+        do {
+            int digit = length % 128;
+            length /= 128;
+            if (length > 0) {
+                digit |= 0x80;
+            }
+            out.writeByte(digit);
+        } while (length > 0);
+    }
+
+    private static int variableLengthSize(int length) {
+        int size = 0;
+        do {
+            length /= 128;
+            size++;
+        } while (length > 0);
+        return size;
+    }
+}
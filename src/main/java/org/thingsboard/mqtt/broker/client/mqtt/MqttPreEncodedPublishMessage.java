@@ -0,0 +1,67 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+
+/**
+ * PUBLISH message that carries the pre-encoded topic of its publisher and is written by {@link MqttPreEncodedPublishEncoder}.
+ * It is still a regular {@link MqttPublishMessage}, so the rest of the client handles it as any other publish
+ */
+public final class MqttPreEncodedPublishMessage extends MqttPublishMessage {
+
+    private static final MqttFixedHeader[][] FIXED_HEADERS = new MqttFixedHeader[MqttQoS.EXACTLY_ONCE.value() + 1][2];
+
+    static {
+        for (MqttQoS qos : new MqttQoS[]{MqttQoS.AT_MOST_ONCE, MqttQoS.AT_LEAST_ONCE, MqttQoS.EXACTLY_ONCE}) {
+            FIXED_HEADERS[qos.value()][0] = new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, false, 0);
+            FIXED_HEADERS[qos.value()][1] = new MqttFixedHeader(MqttMessageType.PUBLISH, false, qos, true, 0);
+        }
+    }
+
+    private final MqttEncodedTopic encodedTopic;
+
+    public MqttPreEncodedPublishMessage(MqttEncodedTopic encodedTopic, MqttQoS qos, boolean retain, int packetId, ByteBuf payload) {
+        this(FIXED_HEADERS[qos.value()][retain ? 1 : 0], new MqttPublishVariableHeader(encodedTopic.getTopic(), packetId), payload, encodedTopic);
+    }
+
+    private MqttPreEncodedPublishMessage(MqttFixedHeader fixedHeader, MqttPublishVariableHeader variableHeader, ByteBuf payload,
+                                         MqttEncodedTopic encodedTopic) {
+        super(fixedHeader, variableHeader, payload);
+        this.encodedTopic = encodedTopic;
+    }
+
+    MqttEncodedTopic getEncodedTopic() {
+        return encodedTopic;
+    }
+
+    /**
+     * @return the same message with another fixed header, e.g. with the DUP flag set for retransmission
+     */
+    MqttPreEncodedPublishMessage withFixedHeader(MqttFixedHeader fixedHeader, ByteBuf payload) {
+        return new MqttPreEncodedPublishMessage(fixedHeader, variableHeader(), payload, encodedTopic);
+    }
+
+    @Override
+    public MqttPublishMessage replace(ByteBuf content) {
+        return new MqttPreEncodedPublishMessage(fixedHeader(), variableHeader(), content, encodedTopic);
+    }
+}
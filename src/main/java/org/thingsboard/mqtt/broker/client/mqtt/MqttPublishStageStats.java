@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatistics;
+
+/**
+ * Latency of the stages of a PUBLISH after it is written to the channel, in milliseconds:
+ * from entering the pipeline until its bytes are written to the socket (encoding and waiting in the outbound buffer),
+ * and from the socket write until PUBACK/PUBREC is received (network and broker).
+ * Shared by all the clients created by one client factory.
+ */
+public final class MqttPublishStageStats {
+
+    private final DescriptiveStatistics pipelineToSocketStats = new SynchronizedDescriptiveStatistics();
+    private final DescriptiveStatistics socketToAckStats = new SynchronizedDescriptiveStatistics();
+
+    void onWrittenToSocket(long pipelineToSocketNanos) {
+        pipelineToSocketStats.addValue(pipelineToSocketNanos / 1_000_000d);
+    }
+
+    void onAcknowledged(long socketToAckNanos) {
+        socketToAckStats.addValue(socketToAckNanos / 1_000_000d);
+    }
+
+    public DescriptiveStatistics getPipelineToSocketStats() {
+        return pipelineToSocketStats;
+    }
+
+    public DescriptiveStatistics getSocketToAckStats() {
+        return socketToAckStats;
+    }
+
+    public void clear() {
+        pipelineToSocketStats.clear();
+        socketToAckStats.clear();
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+
+/**
+ * Sits at the tail of the pipeline and timestamps every PUBLISH when it enters the pipeline and when its bytes
+ * are written to the socket. The socket write time of the first send is kept on the pending publish,
+ * so that the time until the acknowledgement covers only the network and the broker.
+ */
+final class MqttPublishTimestampHandler extends ChannelOutboundHandlerAdapter {
+
+    private final MqttClientImpl client;
+    private final MqttPublishStageStats stageStats;
+
+    MqttPublishTimestampHandler(MqttClientImpl client, MqttPublishStageStats stageStats) {
+        this.client = client;
+        this.stageStats = stageStats;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (msg instanceof MqttPublishMessage) {
+            MqttPublishMessage publishMessage = (MqttPublishMessage) msg;
+            long pipelineEnterNanos = System.nanoTime();
+            int packetId = publishMessage.variableHeader().packetId();
+            MqttPendingPublish pendingPublish = packetId > 0 && !publishMessage.fixedHeader().isDup() ?
+                    client.getPendingPublishes().get(packetId) : null;
+            promise = promise.unvoid();
+            promise.addListener(future -> {
+                if (future.isSuccess()) {
+                    long socketWriteNanos = System.nanoTime();
+                    stageStats.onWrittenToSocket(socketWriteNanos - pipelineEnterNanos);
+                    if (pendingPublish != null) {
+                        pendingPublish.setSocketWriteNanos(socketWriteNanos);
+                    }
+                }
+            });
+        }
+        ctx.write(msg, promise);
+    }
+}
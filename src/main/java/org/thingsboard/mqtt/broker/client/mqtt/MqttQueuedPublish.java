@@ -0,0 +1,47 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+
+/**
+ * A publish that waits in the client until the in-flight window has room for it
+ */
+final class MqttQueuedPublish {
+
+    private final MqttPendingPublish pendingPublish;
+    private final MqttPublishMessage message;
+    private final ChannelPromise promise;
+
+    MqttQueuedPublish(MqttPendingPublish pendingPublish, MqttPublishMessage message, ChannelPromise promise) {
+        this.pendingPublish = pendingPublish;
+        this.message = message;
+        this.promise = promise;
+    }
+
+    MqttPendingPublish getPendingPublish() {
+        return pendingPublish;
+    }
+
+    MqttPublishMessage getMessage() {
+        return message;
+    }
+
+    ChannelPromise getPromise() {
+        return promise;
+    }
+}
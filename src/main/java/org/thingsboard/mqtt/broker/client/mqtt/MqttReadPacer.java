@@ -0,0 +1,66 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.channel.Channel;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate a client consumes messages at without blocking the event loop: once the client gets ahead of its rate,
+ * reading from the broker is paused and resumed by a task scheduled on the event loop when the client is back on schedule.
+ * Messages keep queuing up on the broker meanwhile, which simulates a slow consumer. Confined to the event loop of the channel.
+ */
+final class MqttReadPacer {
+    // reading is paused only when the client is ahead by more than this, so that a fast rate does not pause on every message
+    private static final long MIN_BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final MqttClient client;
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    // theoretical arrival time of the next message, as in the generic cell rate algorithm
+    private long nextMessageNanos;
+    // resumes the channel of this pacer only, it is cancelled when the channel closes so that it can not resume the next one
+    private ScheduledFuture<?> resumeFuture;
+
+    MqttReadPacer(MqttClient client, double maxMessagesPerSecond) {
+        this.client = client;
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / maxMessagesPerSecond));
+        this.burstNanos = Math.max(intervalNanos, MIN_BURST_NANOS);
+    }
+
+    void onMessage(Channel channel) {
+        long now = System.nanoTime();
+        nextMessageNanos = Math.max(nextMessageNanos, now) + intervalNanos;
+        long aheadNanos = nextMessageNanos - now - burstNanos;
+        if (aheadNanos > 0 && !client.isReadPaused(ReadPauseReason.PACING)) {
+            client.pauseReading(ReadPauseReason.PACING);
+            resumeFuture = channel.eventLoop().schedule(() -> {
+                resumeFuture = null;
+                client.resumeReading(ReadPauseReason.PACING);
+            }, aheadNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void onChannelInactive() {
+        if (resumeFuture != null) {
+            resumeFuture.cancel(false);
+            resumeFuture = null;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.List;
+
+/**
+ * Subscriptions of a client by their topic filter. Incoming messages are dispatched through a trie of the filters,
+ * so the cost of a dispatch does not grow with the number of subscriptions and no copy of them is made per message.
+ */
+final class MqttSubscriptions {
+
+    private final HashMultimap<String, MqttSubscription> subscriptions = HashMultimap.create();
+    private final MqttTopicFilterTrie<MqttSubscription> trie = new MqttTopicFilterTrie<>();
+
+    synchronized void put(String topic, MqttSubscription subscription) {
+        if (subscriptions.put(topic, subscription)) {
+            trie.add(topic, subscription);
+        }
+    }
+
+    synchronized void remove(String topic, MqttSubscription subscription) {
+        if (subscriptions.remove(topic, subscription)) {
+            trie.remove(topic, subscription);
+        }
+    }
+
+    synchronized void clear() {
+        subscriptions.clear();
+        trie.clear();
+    }
+
+    synchronized ImmutableSet<MqttSubscription> get(String topic) {
+        return ImmutableSet.copyOf(subscriptions.get(topic));
+    }
+
+    synchronized boolean hasSubscriptions(String topic) {
+        return subscriptions.containsKey(topic);
+    }
+
+    /**
+     * Adds every subscription whose topic filter matches the topic to the given list, without locking
+     */
+    void collectMatching(String topic, List<MqttSubscription> matches) {
+        trie.match(topic, matches);
+    }
+}
@@ -0,0 +1,55 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Topic aliases of one connection. Aliases are assigned in the order PUBLISH packets are encoded,
+ * so it is only accessed from the event loop of the channel
+ */
+final class MqttTopicAliases {
+
+    private final Map<String, Integer> aliases = new HashMap<>();
+
+    private int maximum;
+
+    /**
+     * @param maximum Topic Alias Maximum from the CONNACK of the broker, 0 means aliases are not accepted
+     */
+    void setMaximum(int maximum) {
+        this.maximum = maximum;
+        this.aliases.clear();
+    }
+
+    /**
+     * @return the alias of the topic, negative if it has just been assigned and has to be sent together with the topic,
+     * 0 if all aliases are taken
+     */
+    int resolve(String topic) {
+        Integer alias = aliases.get(topic);
+        if (alias != null) {
+            return alias;
+        }
+        if (aliases.size() >= maximum) {
+            return 0;
+        }
+        int newAlias = aliases.size() + 1;
+        aliases.put(topic, newAlias);
+        return -newAlias;
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import org.thingsboard.mqtt.broker.util.TopicFilterUtil;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie of topic filters, one level per node, with the '+' and '#' wildcards stored as regular levels.
+ * Matching a topic visits only the nodes of its levels and of the wildcards along the way, so it depends on the depth
+ * of the topic rather than the number of filters. Shared subscriptions ($share/{group}/{filter}) are stored under their filter.
+ * Changes are serialized by the caller, matching is lock-free and may run concurrently with changes.
+ * <p>
+ * Every node publishes its children as an immutable open addressing table that is looked up by a range of the topic,
+ * so matching walks the levels by index and allocates nothing.
+ */
+final class MqttTopicFilterTrie<T> {
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+
+    private final Node<T> root = new Node<>();
+
+    void add(String topicFilter, T value) {
+        Node<T> node = root;
+        String filter = TopicFilterUtil.stripSharePrefix(topicFilter);
+        int start = 0;
+        while (true) {
+            int end = levelEnd(filter, start);
+            String level = filter.substring(start, end);
+            Node<T> child = node.children.get(level);
+            if (child == null) {
+                child = new Node<>();
+                node.children.put(level, child);
+                node.publishChildren();
+            }
+            node = child;
+            if (end == filter.length()) {
+                break;
+            }
+            start = end + 1;
+        }
+        node.addValue(value);
+    }
+
+    void remove(String topicFilter, T value) {
+        remove(root, TopicFilterUtil.stripSharePrefix(topicFilter), 0, value);
+    }
+
+    void clear() {
+        root.children.clear();
+        root.publishChildren();
+    }
+
+    /**
+     * Adds every value whose filter matches the topic to the given list
+     */
+    void match(String topic, List<T> matches) {
+        // wildcards at the first level must not match topics starting with '$'
+        boolean systemTopic = !topic.isEmpty() && topic.charAt(0) == '$';
+        match(root, topic, 0, systemTopic, matches);
+    }
+
+    private void match(Node<T> node, String topic, int start, boolean systemTopic, List<T> matches) {
+        ChildTable<T> children = node.childTable;
+        if (children.isEmpty()) {
+            return;
+        }
+        boolean wildcardsAllowed = node != root || !systemTopic;
+        if (wildcardsAllowed && children.multiLevelWildcard != null) {
+            addValues(children.multiLevelWildcard, matches);
+        }
+        if (start > topic.length()) {
+            return;
+        }
+        int end = levelEnd(topic, start);
+        Node<T> child = children.get(topic, start, end);
+        if (child != null) {
+            matchChild(child, topic, end, systemTopic, matches);
+        }
+        if (wildcardsAllowed && children.singleLevelWildcard != null) {
+            matchChild(children.singleLevelWildcard, topic, end, systemTopic, matches);
+        }
+    }
+
+    private void matchChild(Node<T> child, String topic, int levelEnd, boolean systemTopic, List<T> matches) {
+        if (levelEnd == topic.length()) {
+            addValues(child, matches);
+            // "a/#" also matches "a"
+            Node<T> multiLevel = child.childTable.multiLevelWildcard;
+            if (multiLevel != null) {
+                addValues(multiLevel, matches);
+            }
+        } else {
+            match(child, topic, levelEnd + 1, systemTopic, matches);
+        }
+    }
+
+    private boolean remove(Node<T> node, String filter, int start, T value) {
+        int end = levelEnd(filter, start);
+        String level = filter.substring(start, end);
+        Node<T> child = node.children.get(level);
+        if (child == null) {
+            return false;
+        }
+        boolean removed = end == filter.length() ? child.removeValue(value) : remove(child, filter, end + 1, value);
+        if (removed && child.values.length == 0 && child.children.isEmpty()) {
+            node.children.remove(level);
+            node.publishChildren();
+        }
+        return removed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void addValues(Node<T> node, List<T> matches) {
+        for (Object value : node.values) {
+            matches.add((T) value);
+        }
+    }
+
+    private static int levelEnd(String topic, int start) {
+        int end = topic.indexOf('/', start);
+        return end < 0 ? topic.length() : end;
+    }
+
+    private static int hash(String topic, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + topic.charAt(i);
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Node<T> {
+        // changed only by the serialized writers, matching reads the published table
+        private final Map<String, Node<T>> children = new HashMap<>();
+        // copied on write, so that matching iterates it without an iterator
+        private volatile Object[] values = new Object[0];
+        private volatile ChildTable<T> childTable = new ChildTable<>(Map.of());
+
+        private void publishChildren() {
+            childTable = new ChildTable<>(children);
+        }
+
+        private void addValue(T value) {
+            Object[] newValues = Arrays.copyOf(values, values.length + 1);
+            newValues[values.length] = value;
+            values = newValues;
+        }
+
+        private boolean removeValue(T value) {
+            Object[] oldValues = values;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i].equals(value)) {
+                    Object[] newValues = new Object[oldValues.length - 1];
+                    System.arraycopy(oldValues, 0, newValues, 0, i);
+                    System.arraycopy(oldValues, i + 1, newValues, i, newValues.length - i);
+                    values = newValues;
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Immutable snapshot of the children of a node, with the wildcards kept aside
+     */
+    private static final class ChildTable<T> {
+        private final String[] levels;
+        private final Node<T>[] nodes;
+        private final int mask;
+        private final int size;
+        private final Node<T> singleLevelWildcard;
+        private final Node<T> multiLevelWildcard;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private ChildTable(Map<String, Node<T>> children) {
+            int capacity = Integer.highestOneBit(Math.max(1, children.size()) * 2 - 1) << 1;
+            this.levels = new String[capacity];
+            this.nodes = new Node[capacity];
+            this.mask = capacity - 1;
+            this.size = children.size();
+            children.forEach((level, node) -> {
+                int idx = hash(level, 0, level.length()) & mask;
+                while (levels[idx] != null) {
+                    idx = (idx + 1) & mask;
+                }
+                levels[idx] = level;
+                nodes[idx] = node;
+            });
+            this.singleLevelWildcard = children.get(SINGLE_LEVEL_WILDCARD);
+            this.multiLevelWildcard = children.get(MULTI_LEVEL_WILDCARD);
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        private Node<T> get(String topic, int start, int end) {
+            int length = end - start;
+            for (int idx = hash(topic, start, end) & mask; levels[idx] != null; idx = (idx + 1) & mask) {
+                String level = levels[idx];
+                if (level.length() == length && topic.regionMatches(start, level, 0, length)) {
+                    return nodes[idx];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -17,8 +17,17 @@ package org.thingsboard.mqtt.broker.client.mqtt;
 
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 
+import java.util.List;
 import java.util.function.BiConsumer;
 
 public interface ReceivedMsgProcessor {
-    void processIncomingMessage(MqttPublishMessage message, BiConsumer<MqttPublishMessage, Long> msgProcessor);
+    /**
+     * Messages of the same client are processed in the order they were received
+     */
+    void processIncomingMessage(MqttClient client, MqttPublishMessage message, BiConsumer<MqttPublishMessage, Long> msgProcessor);
+
+    /**
+     * @return number of messages waiting to be processed, per processing shard
+     */
+    List<Integer> getQueueSizes();
 }
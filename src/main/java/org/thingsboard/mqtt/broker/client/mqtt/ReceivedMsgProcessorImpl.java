@@ -16,73 +16,213 @@
 package org.thingsboard.mqtt.broker.client.mqtt;
 
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.util.internal.PlatformDependent;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.service.orchestration.ClockService;
 import org.thingsboard.mqtt.broker.util.ThingsBoardThreadFactory;
 
-import java.util.concurrent.BlockingQueue;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiConsumer;
 
+/**
+ * Processes received messages on a configurable number of shards. A client is always mapped to the same shard,
+ * so its messages are processed in order. Every shard has a bounded lock-free multi-producer/single-consumer queue
+ * drained by its own thread.
+ * <p>
+ * When a queue reaches the high watermark, the clients adding to it stop reading from the broker until the queue drains
+ * to the low watermark, so that a slow consumer pushes back on the broker through TCP instead of filling the heap.
+ * The network threads never wait: a message that finds the queue full goes to the overflow queue of the shard and its client
+ * stops reading as well, so the overflow holds at most the messages already read from the sockets. While the overflow
+ * is not empty, new messages follow it, so the messages of every client are still processed in order.
+ */
 @Slf4j
 @Service
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${test-run.msg-processing.mode:QUEUED}'=='QUEUED'")
 public class ReceivedMsgProcessorImpl implements ReceivedMsgProcessor {
     private static final long MAX_DELAY = 50L;
 
+    private final ClockService clockService;
+
     @Value("${test-run.logs.msg-processing-queue-period}")
     private long logDelay;
+    @Value("${test-run.msg-processing.shards:4}")
+    private int shardsCount;
+    @Value("${test-run.msg-processing.queue-capacity:65536}")
+    private int queueCapacity;
+    @Value("${test-run.msg-processing.high-watermark:49152}")
+    private int highWatermark;
+    @Value("${test-run.msg-processing.low-watermark:16384}")
+    private int lowWatermark;
 
-    private final BlockingQueue<ReceivedMessage> pendingMessagesQueue = new LinkedBlockingQueue<>();
+    private final List<ProcessingShard> shards = new ArrayList<>();
+    private final LongAdder overflowedMessages = new LongAdder();
+    private final LongAdder readPauses = new LongAdder();
 
-    private final ExecutorService handlerExecutor = Executors.newSingleThreadExecutor(ThingsBoardThreadFactory.forName("msg-receive-handler"));
+    private ExecutorService handlerExecutor;
+    private volatile boolean stopped;
     private final ScheduledExecutorService logScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("log-scheduler"));
 
     @PostConstruct
     public void init() {
-        handlerExecutor.execute(this::processPendingMessages);
+        if (shardsCount <= 0) {
+            throw new IllegalArgumentException("Number of message processing shards must be > 0");
+        }
+        if (highWatermark > 0 && (lowWatermark < 0 || lowWatermark >= highWatermark || highWatermark > queueCapacity)) {
+            throw new IllegalArgumentException("Message processing queue watermarks must satisfy 0 <= low watermark < high watermark <= queue capacity");
+        }
+        handlerExecutor = Executors.newFixedThreadPool(shardsCount, ThingsBoardThreadFactory.forName("msg-receive-handler"));
+        for (int i = 0; i < shardsCount; i++) {
+            ProcessingShard shard = new ProcessingShard(PlatformDependent.newFixedMpscQueue(queueCapacity));
+            shards.add(shard);
+            handlerExecutor.execute(shard::processPendingMessages);
+        }
+        log.info("Processing received messages on {} shards, queue capacity per shard - {}, high watermark - {}, low watermark - {}",
+                shardsCount, queueCapacity, highWatermark, lowWatermark);
         logScheduler.scheduleWithFixedDelay(() -> {
-            log.info("Length of processing queue - {}", pendingMessagesQueue.size());
+            log.info("Length of processing queue - {}, per shard - {}, messages overflowed a full queue - {}, read pauses - {}, paused clients - {}",
+                    shards.stream().mapToInt(ProcessingShard::size).sum(), getQueueSizes(), overflowedMessages.sumThenReset(),
+                    readPauses.sumThenReset(), shards.stream().mapToInt(ProcessingShard::pausedClients).sum());
         }, logDelay, logDelay, TimeUnit.MILLISECONDS);
     }
 
     @Override
-    public void processIncomingMessage(MqttPublishMessage message, BiConsumer<MqttPublishMessage, Long> msgProcessor) {
-        pendingMessagesQueue.add(new ReceivedMessage(message, System.currentTimeMillis(), msgProcessor));
+    public void processIncomingMessage(MqttClient client, MqttPublishMessage message, BiConsumer<MqttPublishMessage, Long> msgProcessor) {
+        ProcessingShard shard = shards.get(Math.floorMod(client.getClientConfig().getClientId().hashCode(), shards.size()));
+        shard.add(client, new ReceivedMessage(message, clockService.currentTimestamp(), msgProcessor));
     }
 
-    private void processPendingMessages() {
-        while (!Thread.interrupted()) {
-            ReceivedMessage receivedMessage;
-            try {
-                receivedMessage = pendingMessagesQueue.poll(MAX_DELAY, TimeUnit.MILLISECONDS);
-            } catch (InterruptedException e) {
-                log.info("Queue polling was interrupted.");
-                break;
-            }
-            if (receivedMessage == null) {
-                continue;
-            }
-            try {
-                receivedMessage.getMsgProcessor().accept(receivedMessage.getMsg(), receivedMessage.getReceivedTime());
-            } catch (Exception e) {
-                log.warn("Failed to process message", e);
-            } finally {
-                receivedMessage.getMsg().payload().release();
-            }
+    @Override
+    public List<Integer> getQueueSizes() {
+        List<Integer> queueSizes = new ArrayList<>(shards.size());
+        for (ProcessingShard shard : shards) {
+            queueSizes.add(shard.size());
         }
+        return queueSizes;
     }
 
     @PreDestroy
     public void destroy() {
-        log.info("Stopping {}, size of the queue - {}", ReceivedMsgProcessor.class.getSimpleName(), pendingMessagesQueue.size());
-        handlerExecutor.shutdownNow();
+        log.info("Stopping {}, size of the queues - {}", ReceivedMsgProcessor.class.getSimpleName(), getQueueSizes());
+        stopped = true;
+        if (handlerExecutor != null) {
+            handlerExecutor.shutdownNow();
+        }
         logScheduler.shutdownNow();
     }
+
+    private class ProcessingShard {
+        private final Queue<ReceivedMessage> pendingMessagesQueue;
+        // messages that found the queue full, unbounded, but only filled by the clients that are paused by it
+        private final Queue<ReceivedMessage> overflowQueue = new ConcurrentLinkedQueue<>();
+        private final Queue<MqttClient> pausedClients = new ConcurrentLinkedQueue<>();
+        private volatile Thread consumerThread;
+        private volatile boolean consumerParked;
+
+        ProcessingShard(Queue<ReceivedMessage> pendingMessagesQueue) {
+            this.pendingMessagesQueue = pendingMessagesQueue;
+        }
+
+        // called on the event loop of the client, so pausing the client takes effect right away
+        void add(MqttClient client, ReceivedMessage receivedMessage) {
+            if (stopped) {
+                receivedMessage.getMsg().payload().release();
+                return;
+            }
+            // the overflow holds the newest messages, so nothing may overtake them through the queue
+            if (!overflowQueue.isEmpty() || !pendingMessagesQueue.offer(receivedMessage)) {
+                overflowQueue.add(receivedMessage);
+                overflowedMessages.increment();
+                pauseReading(client);
+                return;
+            }
+            if (highWatermark > 0 && pendingMessagesQueue.size() >= highWatermark) {
+                pauseReading(client);
+            } else if (consumerParked) {
+                wakeUpConsumer();
+            }
+        }
+
+        private void pauseReading(MqttClient client) {
+            if (client.isReadPaused(ReadPauseReason.BACKPRESSURE)) {
+                if (consumerParked) {
+                    wakeUpConsumer();
+                }
+                return;
+            }
+            client.pauseReading(ReadPauseReason.BACKPRESSURE);
+            pausedClients.add(client);
+            readPauses.increment();
+            // the consumer resumes the client once the queue drains, even if it was about to park
+            wakeUpConsumer();
+        }
+
+        int size() {
+            return pendingMessagesQueue.size() + overflowQueue.size();
+        }
+
+        int pausedClients() {
+            return pausedClients.size();
+        }
+
+        private void resumePausedClients() {
+            MqttClient client;
+            while ((client = pausedClients.poll()) != null) {
+                client.resumeReading(ReadPauseReason.BACKPRESSURE);
+            }
+        }
+
+        private void wakeUpConsumer() {
+            consumerParked = false;
+            Thread thread = consumerThread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void processPendingMessages() {
+            consumerThread = Thread.currentThread();
+            while (!Thread.interrupted()) {
+                if (!pausedClients.isEmpty() && overflowQueue.isEmpty() && pendingMessagesQueue.size() <= lowWatermark) {
+                    resumePausedClients();
+                }
+                ReceivedMessage receivedMessage = pendingMessagesQueue.poll();
+                if (receivedMessage == null) {
+                    receivedMessage = overflowQueue.poll();
+                }
+                if (receivedMessage == null) {
+                    consumerParked = true;
+                    // re-check after announcing the park, a producer that missed the flag has already made the message visible
+                    if (pendingMessagesQueue.isEmpty() && overflowQueue.isEmpty()) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(MAX_DELAY));
+                    }
+                    consumerParked = false;
+                    continue;
+                }
+                try {
+                    receivedMessage.getMsgProcessor().accept(receivedMessage.getMsg(), receivedMessage.getReceivedTime());
+                } catch (Exception e) {
+                    log.warn("Failed to process message", e);
+                } finally {
+                    receivedMessage.getMsg().payload().release();
+                }
+            }
+            log.info("Message processing shard was interrupted.");
+        }
+    }
 }
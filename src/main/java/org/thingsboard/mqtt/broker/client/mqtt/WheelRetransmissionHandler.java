@@ -0,0 +1,103 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.channel.EventLoop;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
+import io.netty.util.TimerTask;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Same as {@link RetransmissionHandler} but driven by a {@link Timer} shared by many clients instead of a scheduled task
+ * per message. The retransmission itself runs on the channel event loop, so it never races with the acknowledgement.
+ */
+final class WheelRetransmissionHandler<T extends MqttMessage> implements TimerTask {
+
+    private static final long MAX_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+
+    private Timer timer;
+    private EventLoop eventLoop;
+    private long timeoutMs;
+    private BiConsumer<MqttFixedHeader, T> handler;
+    private T originalMessage;
+
+    private volatile Timeout timeout;
+    private volatile boolean stopped;
+
+    void start(Timer timer, EventLoop eventLoop, long timeoutMs) {
+        if (timer == null) {
+            throw new NullPointerException("timer");
+        }
+        if (eventLoop == null) {
+            throw new NullPointerException("eventLoop");
+        }
+        if (this.handler == null) {
+            throw new NullPointerException("handler");
+        }
+        this.timer = timer;
+        this.eventLoop = eventLoop;
+        this.timeoutMs = timeoutMs;
+        this.stopped = false;
+        Timeout previousTimeout = this.timeout;
+        if (previousTimeout != null) {
+            previousTimeout.cancel();
+        }
+        this.timeout = timer.newTimeout(this, timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void run(Timeout timeout) {
+        if (stopped) {
+            return;
+        }
+        eventLoop.execute(() -> {
+            if (stopped) {
+                return;
+            }
+            boolean isDup = this.originalMessage.fixedHeader().isDup();
+            if (this.originalMessage.fixedHeader().messageType() == MqttMessageType.PUBLISH && this.originalMessage.fixedHeader().qosLevel() != MqttQoS.AT_MOST_ONCE) {
+                isDup = true;
+            }
+            MqttFixedHeader fixedHeader = new MqttFixedHeader(this.originalMessage.fixedHeader().messageType(), isDup, this.originalMessage.fixedHeader().qosLevel(), this.originalMessage.fixedHeader().isRetain(), this.originalMessage.fixedHeader().remainingLength());
+            handler.accept(fixedHeader, originalMessage);
+            this.timeoutMs = Math.min(this.timeoutMs * 2, MAX_TIMEOUT_MS);
+            this.timeout = timer.newTimeout(this, this.timeoutMs, TimeUnit.MILLISECONDS);
+        });
+    }
+
+    void stop() {
+        this.stopped = true;
+        Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    void setHandle(BiConsumer<MqttFixedHeader, T> runnable) {
+        this.handler = runnable;
+    }
+
+    void setOriginalMessage(T originalMessage) {
+        this.originalMessage = originalMessage;
+    }
+}
@@ -16,6 +16,7 @@
 package org.thingsboard.mqtt.broker.config;
 
 import io.netty.handler.codec.mqtt.MqttQoS;
+import org.thingsboard.mqtt.broker.data.LoadProfile;
 import org.thingsboard.mqtt.broker.data.PublisherGroup;
 import org.thingsboard.mqtt.broker.data.SubscriberGroup;
 
@@ -28,7 +29,7 @@ public interface TestRunConfiguration {
 
     List<PublisherGroup> getPublishersConfig();
 
-    int getMaxMessagesPerPublisherPerSecond();
+    double getMaxMessagesPerPublisherPerSecond();
 
     int getSecondsToRun();
 
@@ -47,4 +48,16 @@ public interface TestRunConfiguration {
     List<String> getTelemetryKeys();
 
     int getMaxConcurrentOperations();
+
+    default double getPublisherGroupMsgsPerSecond(PublisherGroup publisherGroup) {
+        return publisherGroup.getMsgsPerSecond() != null ? publisherGroup.getMsgsPerSecond() : getMaxMessagesPerPublisherPerSecond();
+    }
+
+    default LoadProfile getPublisherGroupLoadProfile(PublisherGroup publisherGroup) {
+        return publisherGroup.getLoadProfile() != null ? publisherGroup.getLoadProfile() : LoadProfile.flat(getPublisherGroupMsgsPerSecond(publisherGroup));
+    }
+
+    default int getPublisherGroupMessagesCount(PublisherGroup publisherGroup) {
+        return (int) Math.round(getPublisherGroupLoadProfile(publisherGroup).getMessagesUntil(getSecondsToRun()));
+    }
 }
@@ -18,5 +18,7 @@ package org.thingsboard.mqtt.broker.controller;
 public class ClusterConst {
     public static final String NODE_PATH = "/api/node";
     public static final String ORCHESTRATOR_PATH = "/api/orchestrator";
+    public static final String CLOCK_PATH = "/clock";
+    public static final String CLOCK_OFFSET_PATH = "/clock-offset";
 
 }
@@ -16,9 +16,12 @@
 package org.thingsboard.mqtt.broker.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RestController;
+import org.thingsboard.mqtt.broker.data.ClockOffset;
+import org.thingsboard.mqtt.broker.service.orchestration.ClockService;
 import org.thingsboard.mqtt.broker.service.orchestration.ClusterSynchronizer;
 
 @RestController
@@ -27,9 +30,20 @@ import org.thingsboard.mqtt.broker.service.orchestration.ClusterSynchronizer;
 public class NodeController {
 
     private final ClusterSynchronizer clusterSynchronizer;
+    private final ClockService clockService;
 
     @RequestMapping(method = RequestMethod.POST)
     public void clusterReady() {
         clusterSynchronizer.notifyClusterReady();
     }
+
+    @RequestMapping(value = ClusterConst.CLOCK_PATH, method = RequestMethod.GET)
+    public long clock() {
+        return clockService.localTimeMicros();
+    }
+
+    @RequestMapping(value = ClusterConst.CLOCK_OFFSET_PATH, method = RequestMethod.POST)
+    public void clockOffset(@RequestBody ClockOffset clockOffset) {
+        clockService.updateOffset(clockOffset);
+    }
 }
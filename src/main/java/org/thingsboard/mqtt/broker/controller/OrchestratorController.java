@@ -26,8 +26,11 @@ import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.thingsboard.mqtt.broker.data.NodeInfo;
+import org.thingsboard.mqtt.broker.service.orchestration.ClockSyncService;
 import org.thingsboard.mqtt.broker.service.orchestration.TestRestService;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -41,6 +44,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public class OrchestratorController {
 
     private final TestRestService testRestService;
+    private final ClockSyncService clockSyncService;
 
     @Value("${test-run.max-cluster-wait-time}")
     private int waitTime;
@@ -71,14 +75,10 @@ public class OrchestratorController {
             int nodesInCluster = totalTestsCount > 0 ? totalTestsCount : nodeInfo.getNodesInCluster();
             if (nodeUrls.size() == nodesInCluster) {
                 log.info("Got {} ready nodes", nodeUrls.size());
-                for (String nodeUrl : nodeUrls) {
-                    log.info("Notifying {} node.", nodeUrl);
-                    try {
-                        testRestService.notifyClusterIsReady(nodeUrl);
-                    } catch (Exception e) {
-                        log.warn("Failed to notify {} node", nodeUrl, e);
-                    }
-                }
+                List<String> readyNodeUrls = new ArrayList<>(nodeUrls);
+                // clocks are aligned before the run starts, so that the latency of the very first messages is measured on a common clock.
+                // The nodes are notified once the clocks are synchronized, without holding the ready request of the last node
+                clockSyncService.syncNodes(readyNodeUrls).whenComplete((result, t) -> notifyNodes(readyNodeUrls));
                 nodeUrls.clear();
             }
         } finally {
@@ -86,4 +86,15 @@ public class OrchestratorController {
         }
         return "OK";
     }
+
+    private void notifyNodes(List<String> readyNodeUrls) {
+        for (String nodeUrl : readyNodeUrls) {
+            log.info("Notifying {} node.", nodeUrl);
+            try {
+                testRestService.notifyClusterIsReady(nodeUrl);
+            } catch (Exception e) {
+                log.warn("Failed to notify {} node", nodeUrl, e);
+            }
+        }
+    }
 }
@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Time-varying publish rate of a single publisher. Rates are in messages per second, times are in seconds since publishing started.
+ * Every profile has a closed-form cumulative function, so the pacer knows exactly how many messages are due at any moment.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoadProfile {
+    private LoadProfileType type;
+    private double rate;
+    private double targetRate;
+    private double stepRate;
+    private double amplitude;
+    private double periodSeconds;
+    private double spikeSeconds;
+
+    public static LoadProfile flat(double rate) {
+        return new LoadProfile(LoadProfileType.FLAT, rate, 0, 0, 0, 0, 0);
+    }
+
+    public void validate() {
+        if (type == null) {
+            throw new IllegalArgumentException("Load profile type is not set");
+        }
+        if (rate < 0 || targetRate < 0) {
+            throw new IllegalArgumentException("Load profile rates must be >= 0");
+        }
+        if (type != LoadProfileType.FLAT && periodSeconds <= 0) {
+            throw new IllegalArgumentException(type + " load profile requires periodSeconds > 0");
+        }
+        if (type == LoadProfileType.STEP && stepRate < 0) {
+            throw new IllegalArgumentException("STEP load profile requires stepRate >= 0");
+        }
+        if (type == LoadProfileType.SPIKE && (spikeSeconds < 0 || spikeSeconds > periodSeconds)) {
+            throw new IllegalArgumentException("SPIKE load profile requires 0 <= spikeSeconds <= periodSeconds");
+        }
+        if (type == LoadProfileType.SINE && (amplitude < 0 || amplitude > rate)) {
+            throw new IllegalArgumentException("SINE load profile requires 0 <= amplitude <= rate");
+        }
+    }
+
+    /**
+     * @return the rate at the given moment
+     */
+    public double getRateAt(double t) {
+        switch (type) {
+            case RAMP:
+                return t < periodSeconds ? rate + (targetRate - rate) * t / periodSeconds : targetRate;
+            case STEP:
+                return rate + Math.floor(t / periodSeconds) * stepRate;
+            case SPIKE:
+                return t - Math.floor(t / periodSeconds) * periodSeconds < spikeSeconds ? targetRate : rate;
+            case SINE:
+                return rate + amplitude * Math.sin(2 * Math.PI * t / periodSeconds);
+            default:
+                return rate;
+        }
+    }
+
+    /**
+     * @return the number of messages due from the start until the given moment (the integral of the rate)
+     */
+    public double getMessagesUntil(double t) {
+        if (t <= 0) {
+            return 0;
+        }
+        switch (type) {
+            case RAMP:
+                if (t < periodSeconds) {
+                    return rate * t + (targetRate - rate) * t * t / (2 * periodSeconds);
+                }
+                return (rate + targetRate) * periodSeconds / 2 + targetRate * (t - periodSeconds);
+            case STEP: {
+                double steps = Math.floor(t / periodSeconds);
+                return periodSeconds * (steps * rate + stepRate * steps * (steps - 1) / 2)
+                        + (t - steps * periodSeconds) * (rate + steps * stepRate);
+            }
+            case SPIKE: {
+                double periods = Math.floor(t / periodSeconds);
+                double sincePeriodStart = t - periods * periodSeconds;
+                double periodMessages = targetRate * spikeSeconds + rate * (periodSeconds - spikeSeconds);
+                double currentPeriodMessages = sincePeriodStart < spikeSeconds
+                        ? targetRate * sincePeriodStart
+                        : targetRate * spikeSeconds + rate * (sincePeriodStart - spikeSeconds);
+                return periods * periodMessages + currentPeriodMessages;
+            }
+            case SINE:
+                return rate * t + amplitude * periodSeconds / (2 * Math.PI) * (1 - Math.cos(2 * Math.PI * t / periodSeconds));
+            default:
+                return rate * t;
+        }
+    }
+
+    /**
+     * @return the first moment after the given one at which the profile enters its next step, i.e. the rate jumps
+     * or changes its slope, or {@link Double#MAX_VALUE} if the profile has no more steps
+     */
+    public double getNextStepSeconds(double t) {
+        switch (type) {
+            case RAMP:
+                return t < periodSeconds ? periodSeconds : Double.MAX_VALUE;
+            case STEP:
+                return (Math.floor(t / periodSeconds) + 1) * periodSeconds;
+            case SPIKE: {
+                double periodStart = Math.floor(t / periodSeconds) * periodSeconds;
+                return t < periodStart + spikeSeconds ? periodStart + spikeSeconds : periodStart + periodSeconds;
+            }
+            default:
+                return Double.MAX_VALUE;
+        }
+    }
+}
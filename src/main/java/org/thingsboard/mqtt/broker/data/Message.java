@@ -16,14 +16,27 @@
 package org.thingsboard.mqtt.broker.data;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @AllArgsConstructor
 @NoArgsConstructor
+@Builder
 @Data
 public class Message {
     private long createTime;
     private boolean isWarmUpMsg;
     private byte[] payload;
+    /**
+     * Time the message was scheduled to be sent at in open-loop mode, 0 otherwise.
+     */
+    private long intendedTime;
+    private int publisherId;
+    private long sequence;
+    /**
+     * Publishing run the sequence belongs to, every throughput search phase starts a new one,
+     * so late messages of a previous run are told apart from the messages of the current one.
+     */
+    private int epoch;
 }
\ No newline at end of file
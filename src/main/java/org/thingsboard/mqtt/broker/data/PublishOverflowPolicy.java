@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.data;
+
+/**
+ * What a publisher does when its in-flight window is full
+ */
+public enum PublishOverflowPolicy {
+    /**
+     * Keep the message in the backlog of the publisher and publish the backlog once its window frees up,
+     * other publishers are not held up
+     */
+    BLOCK,
+    /**
+     * Skip the message and count it as dropped
+     */
+    DROP,
+    /**
+     * Queue the message in the client up to the configured queue size, messages beyond it are dropped
+     */
+    QUEUE,
+}
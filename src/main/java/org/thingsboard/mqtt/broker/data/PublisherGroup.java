@@ -26,19 +26,47 @@ public class PublisherGroup {
     private final String topicPrefix;
     private final String clientIdPrefix;
     private final boolean debugEnabled;
+    /**
+     * Messages per second sent by every publisher of the group, may be fractional. If null the test run default is used
+     */
+    private final Double msgsPerSecond;
+    /**
+     * Time-varying publish rate of every publisher of the group, takes precedence over msgsPerSecond
+     */
+    private final LoadProfile loadProfile;
+    /**
+     * Publish topic of every publisher of the group, see {@link TopicTemplate}. Built from topicPrefix + publisher index if not configured
+     */
+    private final TopicTemplate topicTemplate;
+    /**
+     * If true, publishers of the group send MQTT 5 topic aliases instead of the topic after the first message
+     */
+    private final boolean topicAliasEnabled;
 
     public PublisherGroup(int id, int publishers, String topicPrefix) {
-        this(id, publishers, topicPrefix, null, false);
+        this(id, publishers, topicPrefix, null, false, null, null, null, null);
     }
 
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
     public PublisherGroup(@JsonProperty("id") int id, @JsonProperty("publishers") int publishers,
                           @JsonProperty("topicPrefix") String topicPrefix, @JsonProperty("clientIdPrefix") String clientIdPrefix,
-                          @JsonProperty("isDebugEnabled") Boolean isDebugEnabled) {
+                          @JsonProperty("isDebugEnabled") Boolean isDebugEnabled, @JsonProperty("msgsPerSecond") Double msgsPerSecond,
+                          @JsonProperty("loadProfile") LoadProfile loadProfile, @JsonProperty("topicTemplate") String topicTemplate,
+                          @JsonProperty("topicAliasEnabled") Boolean topicAliasEnabled) {
         this.id = id;
         this.publishers = publishers;
         this.topicPrefix = topicPrefix;
         this.clientIdPrefix = clientIdPrefix != null ? clientIdPrefix : "test_pub_client_" + id + "_";
         this.debugEnabled = isDebugEnabled != null ? isDebugEnabled : false;
+        this.msgsPerSecond = msgsPerSecond;
+        if (loadProfile != null) {
+            loadProfile.validate();
+        }
+        this.loadProfile = loadProfile;
+        if (topicTemplate == null && topicPrefix == null) {
+            throw new IllegalArgumentException("Publisher group " + id + " has neither topicPrefix nor topicTemplate");
+        }
+        this.topicAliasEnabled = topicAliasEnabled != null ? topicAliasEnabled : false;
+        this.topicTemplate = topicTemplate != null ? TopicTemplate.parse(topicTemplate) : TopicTemplate.prefixed(topicPrefix);
     }
 }
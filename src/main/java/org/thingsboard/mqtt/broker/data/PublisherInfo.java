@@ -18,28 +18,57 @@ package org.thingsboard.mqtt.broker.data;
 import lombok.Getter;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttClient;
+import org.thingsboard.mqtt.broker.client.mqtt.MqttEncodedTopic;
 
 @Getter
 public class PublisherInfo {
     private final MqttClient publisher;
+    private final int id;
+    private final int groupId;
     private final String clientId;
     private final String topic;
+    /**
+     * UTF-8 encoded topic, expanded once when the publisher connects
+     */
+    private final byte[] topicBytes;
+    private final MqttEncodedTopic encodedTopic;
     private final DescriptiveStatistics acknowledgeLatencyStats;
     private final boolean debug;
 
-    public PublisherInfo(MqttClient publisher, String clientId, String topic, DescriptiveStatistics acknowledgeLatencyStats) {
+    private long sequence;
+
+    public PublisherInfo(MqttClient publisher, int id, int groupId, String clientId, String topic, byte[] topicBytes, DescriptiveStatistics acknowledgeLatencyStats) {
         this.publisher = publisher;
+        this.id = id;
+        this.groupId = groupId;
         this.clientId = clientId;
         this.topic = topic;
+        this.topicBytes = topicBytes;
+        this.encodedTopic = publisher.encodeTopic(topic, topicBytes);
         this.acknowledgeLatencyStats = acknowledgeLatencyStats;
         this.debug = acknowledgeLatencyStats != null;
     }
 
-    public PublisherInfo(MqttClient publisher, String clientId, String topic) {
+    public PublisherInfo(MqttClient publisher, int id, int groupId, String clientId, String topic, byte[] topicBytes) {
         this.publisher = publisher;
+        this.id = id;
+        this.groupId = groupId;
         this.clientId = clientId;
         this.topic = topic;
+        this.topicBytes = topicBytes;
+        this.encodedTopic = publisher.encodeTopic(topic, topicBytes);
         this.acknowledgeLatencyStats = null;
         this.debug = false;
     }
-}
\ No newline at end of file
+
+    public long nextSequence() {
+        return sequence++;
+    }
+
+    /**
+     * Starts the sequence of published messages over, called before every publishing run
+     */
+    public void resetSequence() {
+        sequence = 0;
+    }
+}
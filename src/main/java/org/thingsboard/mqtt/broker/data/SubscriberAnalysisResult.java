@@ -25,4 +25,21 @@ import lombok.Getter;
 public class SubscriberAnalysisResult {
     private final int lostMessages;
     private final int duplicatedMessages;
+    private final long expectedMessages;
+    /**
+     * Messages that arrived after a message with a higher sequence number of the same publisher
+     */
+    private final long outOfOrderMessages;
+    /**
+     * Messages that arrived too late to tell whether they were duplicates, see {@link org.thingsboard.mqtt.broker.util.SequenceTracker}
+     */
+    private final long outOfWindowMessages;
+    /**
+     * The longest run of consecutive messages of a publisher that a subscriber missed
+     */
+    private final long maxSequenceGap;
+    /**
+     * Ignored late messages of a previous publishing run, e.g. of the previous throughput search phase
+     */
+    private final long staleMessages;
 }
@@ -16,9 +16,11 @@
 package org.thingsboard.mqtt.broker.data;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Getter;
 import lombok.ToString;
+import org.thingsboard.mqtt.broker.util.TopicFilterUtil;
 
 import java.util.Set;
 
@@ -32,9 +34,17 @@ public class SubscriberGroup {
     private final PersistentSessionInfo persistentSessionInfo;
     private final String clientIdPrefix;
     private final boolean debugEnabled;
+    /**
+     * Max number of messages every subscriber of the group consumes per second, 0 means no limit
+     */
+    private final double maxMsgsPerSecond;
+    /**
+     * Simulated processing time of a message in milliseconds, limits the consumption rate like maxMsgsPerSecond does
+     */
+    private final double processingDelayMs;
 
     public SubscriberGroup(int id, int subscribers, String topicFilter, Set<Integer> expectedPublisherGroups, PersistentSessionInfo persistentSessionInfo) {
-        this(id, subscribers, topicFilter, expectedPublisherGroups, persistentSessionInfo, null, false);
+        this(id, subscribers, topicFilter, expectedPublisherGroups, persistentSessionInfo, null, false, null, null);
     }
 
     @JsonCreator(mode = JsonCreator.Mode.PROPERTIES)
@@ -42,7 +52,9 @@ public class SubscriberGroup {
                            @JsonProperty("expectedPublisherGroups") Set<Integer> expectedPublisherGroups,
                            @JsonProperty("persistentSessionInfo") PersistentSessionInfo persistentSessionInfo,
                            @JsonProperty("clientIdPrefix") String clientIdPrefix,
-                           @JsonProperty("isDebugEnabled") Boolean isDebugEnabled) {
+                           @JsonProperty("isDebugEnabled") Boolean isDebugEnabled,
+                           @JsonProperty("maxMsgsPerSecond") Double maxMsgsPerSecond,
+                           @JsonProperty("processingDelayMs") Double processingDelayMs) {
         this.id = id;
         this.subscribers = subscribers;
         this.topicFilter = topicFilter;
@@ -50,5 +62,29 @@ public class SubscriberGroup {
         this.persistentSessionInfo = persistentSessionInfo;
         this.clientIdPrefix = clientIdPrefix != null ? clientIdPrefix : "test_sub_client_" + id + "_";
         this.debugEnabled = isDebugEnabled != null ? isDebugEnabled : false;
+        this.maxMsgsPerSecond = maxMsgsPerSecond != null ? maxMsgsPerSecond : 0;
+        this.processingDelayMs = processingDelayMs != null ? processingDelayMs : 0;
+    }
+
+    /**
+     * @return true if the subscribers of the group share a single subscription ($share/{ShareName}/{filter}), so that every
+     * message is delivered to only one of them
+     */
+    @JsonIgnore
+    public boolean isShared() {
+        return TopicFilterUtil.isShared(topicFilter);
+    }
+
+    /**
+     * @return the consumption rate limit of every subscriber of the group, 0 if the subscribers consume as fast as they can
+     */
+    @JsonIgnore
+    public double getMaxReceiveRate() {
+        double maxReceiveRate = maxMsgsPerSecond;
+        if (processingDelayMs > 0) {
+            double delayRate = 1000 / processingDelayMs;
+            maxReceiveRate = maxReceiveRate > 0 ? Math.min(maxReceiveRate, delayRate) : delayRate;
+        }
+        return maxReceiveRate;
     }
 }
@@ -19,6 +19,7 @@ import lombok.Getter;
 import lombok.Setter;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttClient;
+import org.thingsboard.mqtt.broker.util.SequenceTracker;
 
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -31,17 +32,30 @@ public class SubscriberInfo {
     private final AtomicInteger totalReceivedMsgs;
     private final SubscriberGroup subscriberGroup;
     private final DescriptiveStatistics latencyStats;
+    private final SequenceTracker sequenceTracker;
+    /**
+     * Shared by all subscribers of a shared subscription group, as the group as a whole receives every message once.
+     * Null if the subscriber is not a member of a shared subscription group
+     */
+    private final SequenceTracker sharedSequenceTracker;
 
     public SubscriberInfo(MqttClient subscriber, int id, String clientId, AtomicInteger totalReceivedMsgs, SubscriberGroup subscriberGroup) {
         this(subscriber, id, clientId, totalReceivedMsgs, subscriberGroup, null);
     }
 
     public SubscriberInfo(MqttClient subscriber, int id, String clientId, AtomicInteger totalReceivedMsgs, SubscriberGroup subscriberGroup, DescriptiveStatistics latencyStats) {
+        this(subscriber, id, clientId, totalReceivedMsgs, subscriberGroup, latencyStats, null);
+    }
+
+    public SubscriberInfo(MqttClient subscriber, int id, String clientId, AtomicInteger totalReceivedMsgs, SubscriberGroup subscriberGroup,
+                          DescriptiveStatistics latencyStats, SequenceTracker sharedSequenceTracker) {
         this.subscriber = subscriber;
         this.id = id;
         this.clientId = clientId;
         this.totalReceivedMsgs = totalReceivedMsgs;
         this.subscriberGroup = subscriberGroup;
         this.latencyStats = latencyStats;
+        this.sequenceTracker = new SequenceTracker();
+        this.sharedSequenceTracker = sharedSequenceTracker;
     }
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.data;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock domain of message timestamps and of the latency stats
+ */
+@Getter
+@RequiredArgsConstructor
+public enum TimestampMode {
+    /**
+     * Wall clock in milliseconds aligned to the orchestrator clock, comparable across nodes
+     */
+    WALL_CLOCK(TimeUnit.MILLISECONDS, "ms"),
+    /**
+     * System.nanoTime anchored to the wall clock at startup, in microseconds. Not affected by wall clock adjustments,
+     * but comparable only when publishers and subscribers run on the same node
+     */
+    MONOTONIC(TimeUnit.MICROSECONDS, "us"),
+    ;
+
+    private final TimeUnit timeUnit;
+    private final String unitName;
+}
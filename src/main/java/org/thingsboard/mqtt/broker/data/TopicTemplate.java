@@ -0,0 +1,209 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.data;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Publish topic with placeholders that is expanded once per publisher when it connects:
+ * <ul>
+ *     <li>{group} - id of the publisher group</li>
+ *     <li>{idx} - index of the publisher in the group, wrapped at max_publish_topic_group_idx</li>
+ *     <li>{hash:N} - bucket in [0, N) derived from the publisher index, every placeholder spreads publishers differently</li>
+ *     <li>{word} or {word:N} - word from a fixed vocabulary (or its first N words) derived from the publisher index</li>
+ * </ul>
+ * Expansion depends only on the group and the publisher index, so every test node expands the same topics.
+ */
+public class TopicTemplate {
+    public static final int VOCABULARY_SIZE = 1024;
+    private static final long VOCABULARY_SEED = 0x5eed_70b1cL;
+    private static final String[] VOCABULARY = createVocabulary();
+    private static final int MAX_TOPIC_LENGTH = 65535;
+
+    @Getter
+    private final String template;
+    private final List<Segment> segments;
+
+    private TopicTemplate(String template, List<Segment> segments) {
+        this.template = template;
+        this.segments = segments;
+    }
+
+    public static TopicTemplate parse(String template) {
+        if (template == null || template.isEmpty()) {
+            throw new IllegalArgumentException("Topic template is empty");
+        }
+        List<Segment> segments = new ArrayList<>();
+        int pos = 0;
+        while (pos < template.length()) {
+            int open = template.indexOf('{', pos);
+            if (open < 0) {
+                segments.add(literal(template.substring(pos)));
+                break;
+            }
+            if (open > pos) {
+                segments.add(literal(template.substring(pos, open)));
+            }
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                throw new IllegalArgumentException("Unclosed placeholder in topic template " + template);
+            }
+            segments.add(placeholder(template.substring(open + 1, close), segments.size(), template));
+            pos = close + 1;
+        }
+        return new TopicTemplate(template, segments);
+    }
+
+    /**
+     * @return template of the plain topicPrefix + {idx} topics
+     */
+    public static TopicTemplate prefixed(String topicPrefix) {
+        List<Segment> segments = new ArrayList<>();
+        segments.add(new Segment(SegmentType.LITERAL, topicPrefix, 0, 0));
+        segments.add(new Segment(SegmentType.IDX, null, 1, 0));
+        return new TopicTemplate(topicPrefix + "{idx}", segments);
+    }
+
+    public String expand(int groupId, int publisherIndex, int topicGroupIdx) {
+        StringBuilder topic = new StringBuilder();
+        for (Segment segment : segments) {
+            switch (segment.type) {
+                case LITERAL:
+                    topic.append(segment.literal);
+                    break;
+                case GROUP:
+                    topic.append(groupId);
+                    break;
+                case IDX:
+                    topic.append(topicGroupIdx);
+                    break;
+                case HASH:
+                    topic.append(bucket(publisherIndex, segment.position, segment.bound));
+                    break;
+                case WORD:
+                    topic.append(VOCABULARY[bucket(publisherIndex, segment.position, segment.bound)]);
+                    break;
+            }
+        }
+        return topic.toString();
+    }
+
+    /**
+     * @return UTF-8 bytes of the expanded topic, as they are written to the PUBLISH packet
+     */
+    public static byte[] encode(String topic) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        if (topicBytes.length > MAX_TOPIC_LENGTH) {
+            throw new IllegalArgumentException("Topic " + topic + " is longer than " + MAX_TOPIC_LENGTH + " bytes");
+        }
+        return topicBytes;
+    }
+
+    private static int bucket(int publisherIndex, int position, int bound) {
+        return Math.floorMod(mix(publisherIndex * 0x9E3779B9 + position), bound);
+    }
+
+    // murmur3 finalizer, spreads consecutive indexes over all buckets
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static String[] createVocabulary() {
+        Random random = new Random(VOCABULARY_SEED);
+        String[] vocabulary = new String[VOCABULARY_SIZE];
+        Set<String> used = new HashSet<>();
+        int i = 0;
+        while (i < VOCABULARY_SIZE) {
+            int length = 3 + random.nextInt(6);
+            StringBuilder word = new StringBuilder(length);
+            for (int j = 0; j < length; j++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            if (used.add(word.toString())) {
+                vocabulary[i++] = word.toString();
+            }
+        }
+        return vocabulary;
+    }
+
+    private static Segment literal(String literal) {
+        if (literal.indexOf('+') >= 0 || literal.indexOf('#') >= 0 || literal.indexOf('}') >= 0) {
+            throw new IllegalArgumentException("Topic template must not contain wildcards or unmatched braces: " + literal);
+        }
+        return new Segment(SegmentType.LITERAL, literal, 0, 0);
+    }
+
+    private static Segment placeholder(String placeholder, int position, String template) {
+        int colon = placeholder.indexOf(':');
+        String name = colon < 0 ? placeholder : placeholder.substring(0, colon);
+        Integer bound = colon < 0 ? null : parseBound(placeholder.substring(colon + 1), template);
+        switch (name) {
+            case "group":
+                return new Segment(SegmentType.GROUP, null, position, 0);
+            case "idx":
+                return new Segment(SegmentType.IDX, null, position, 0);
+            case "hash":
+                if (bound == null) {
+                    throw new IllegalArgumentException("{hash:N} requires the number of buckets in topic template " + template);
+                }
+                return new Segment(SegmentType.HASH, null, position, bound);
+            case "word":
+                if (bound != null && bound > VOCABULARY_SIZE) {
+                    throw new IllegalArgumentException("{word:N} supports at most " + VOCABULARY_SIZE + " words in topic template " + template);
+                }
+                return new Segment(SegmentType.WORD, null, position, bound != null ? bound : VOCABULARY_SIZE);
+            default:
+                throw new IllegalArgumentException("Unknown placeholder {" + placeholder + "} in topic template " + template);
+        }
+    }
+
+    private static int parseBound(String bound, String template) {
+        try {
+            int value = Integer.parseInt(bound);
+            if (value <= 0) {
+                throw new IllegalArgumentException("Placeholder bound must be > 0 in topic template " + template);
+            }
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid placeholder bound " + bound + " in topic template " + template);
+        }
+    }
+
+    private enum SegmentType {
+        LITERAL, GROUP, IDX, HASH, WORD
+    }
+
+    @AllArgsConstructor
+    private static class Segment {
+        private final SegmentType type;
+        private final String literal;
+        private final int position;
+        private final int bound;
+    }
+}
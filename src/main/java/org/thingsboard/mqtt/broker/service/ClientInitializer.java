@@ -17,6 +17,8 @@ package org.thingsboard.mqtt.broker.service;
 
 import org.thingsboard.mqtt.broker.client.mqtt.ConnectCallback;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttClient;
+import org.thingsboard.mqtt.broker.client.mqtt.MqttClientStats;
+import org.thingsboard.mqtt.broker.client.mqtt.MqttPublishStageStats;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttHandler;
 
 public interface ClientInitializer {
@@ -26,5 +28,24 @@ public interface ClientInitializer {
 
     MqttClient createClient(String clientId, String userName, boolean cleanSession, MqttHandler defaultHandler);
 
+    /**
+     * Creates a client whose outbound traffic is counted in {@link #getPublisherClientStats()}
+     */
+    MqttClient createPublisherClient(String clientId, String userName);
+
+    /**
+     * Creates a client whose outbound traffic is counted in {@link #getSubscriberClientStats()}
+     */
+    MqttClient createSubscriberClient(String clientId, String userName, boolean cleanSession, MqttHandler defaultHandler);
+
     void connectClient(ConnectCallback connectCallback, MqttClient client);
+
+    MqttClientStats getPublisherClientStats();
+
+    MqttClientStats getSubscriberClientStats();
+
+    /**
+     * @return publish stage latency stats, null if publish timestamping is disabled
+     */
+    MqttPublishStageStats getPublishStageStats();
 }
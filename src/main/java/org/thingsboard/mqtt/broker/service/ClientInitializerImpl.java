@@ -19,8 +19,10 @@ import com.google.common.collect.Iterables;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.handler.codec.mqtt.MqttVersion;
+import io.netty.util.HashedWheelTimer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -29,6 +31,8 @@ import org.springframework.util.StringUtils;
 import org.thingsboard.mqtt.broker.client.mqtt.ConnectCallback;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttClient;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttClientConfig;
+import org.thingsboard.mqtt.broker.client.mqtt.MqttClientStats;
+import org.thingsboard.mqtt.broker.client.mqtt.MqttPublishStageStats;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttHandler;
 import org.thingsboard.mqtt.broker.client.mqtt.ReceivedMsgProcessor;
 import org.thingsboard.mqtt.broker.data.dto.HostPortDto;
@@ -54,8 +58,30 @@ public class ClientInitializerImpl implements ClientInitializer {
     private int keepAliveSeconds;
     @Value("${mqtt.client.ip_addresses}")
     private String ipAddressStr;
+    @Value("${mqtt.client.flush-consolidation-after-flushes:0}")
+    private int flushConsolidationAfterFlushes;
+    @Value("${mqtt.client.max-in-flight-publishes:0}")
+    private int maxInFlightPublishes;
+    @Value("${mqtt.client.retransmission-timeout-ms:0}")
+    private long retransmissionTimeoutMs;
+    @Value("${mqtt.client.pre-encoded-publish:true}")
+    private boolean preEncodedPublish;
+    @Value("${mqtt.client.publish-stage-stats-enabled:false}")
+    private boolean publishStageStatsEnabled;
+    @Value("${mqtt.client.coalesce-ack-flushes:false}")
+    private boolean coalesceAckFlushes;
+
+    @Getter
+    private final MqttClientStats publisherClientStats = new MqttClientStats();
+
+    @Getter
+    private final MqttClientStats subscriberClientStats = new MqttClientStats();
+
+    @Getter
+    private MqttPublishStageStats publishStageStats;
 
     private EventLoopGroup eventLoopGroup;
+    private HashedWheelTimer retransmissionTimer;
     private Iterator<String> ipAddrIterator;
 
     @PostConstruct
@@ -65,6 +91,14 @@ public class ClientInitializerImpl implements ClientInitializer {
             List<String> ipAddrList = Arrays.asList(ipAddressStr.split(","));
             ipAddrIterator = Iterables.cycle(ipAddrList).iterator();
         }
+        if (retransmissionTimeoutMs > 0) {
+            retransmissionTimer = new HashedWheelTimer(ThingsBoardThreadFactory.forName("retransmission-timer"),
+                    100, TimeUnit.MILLISECONDS, 512, true, 0);
+            log.info("Retransmitting unacknowledged messages after {} ms", retransmissionTimeoutMs);
+        }
+        if (publishStageStatsEnabled) {
+            publishStageStats = new MqttPublishStageStats();
+        }
     }
 
     @Override
@@ -79,12 +113,34 @@ public class ClientInitializerImpl implements ClientInitializer {
 
     @Override
     public MqttClient createClient(String clientId, String userName, boolean cleanSession, MqttHandler defaultHandler) {
+        return createClient(clientId, userName, cleanSession, defaultHandler, null);
+    }
+
+    @Override
+    public MqttClient createPublisherClient(String clientId, String userName) {
+        return createClient(clientId, userName, true, null, publisherClientStats);
+    }
+
+    @Override
+    public MqttClient createSubscriberClient(String clientId, String userName, boolean cleanSession, MqttHandler defaultHandler) {
+        return createClient(clientId, userName, cleanSession, defaultHandler, subscriberClientStats);
+    }
+
+    private MqttClient createClient(String clientId, String userName, boolean cleanSession, MqttHandler defaultHandler, MqttClientStats clientStats) {
         MqttClientConfig config = new MqttClientConfig(sslConfig.getSslContext());
         config.setClientId(clientId);
         config.setUsername(userName);
         config.setCleanSession(cleanSession);
         config.setProtocolVersion(MqttVersion.MQTT_5);
         config.setTimeoutSeconds(keepAliveSeconds);
+        config.setFlushConsolidationAfterFlushes(flushConsolidationAfterFlushes);
+        config.setClientStats(clientStats);
+        config.setPublishStageStats(publishStageStats);
+        config.setMaxInFlightPublishes(maxInFlightPublishes);
+        config.setRetransmissionTimer(retransmissionTimer);
+        config.setRetransmissionTimeoutMs(retransmissionTimeoutMs);
+        config.setPreEncodedPublish(preEncodedPublish);
+        config.setCoalesceAckFlushes(coalesceAckFlushes);
         MqttClient client = MqttClient.create(config, defaultHandler, receivedMsgProcessor, ipAddrIterator);
         client.setEventLoop(eventLoopGroup);
         return client;
@@ -101,5 +157,8 @@ public class ClientInitializerImpl implements ClientInitializer {
         if (!eventLoopGroup.isShutdown()) {
             eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
         }
+        if (retransmissionTimer != null) {
+            retransmissionTimer.stop();
+        }
     }
 }
@@ -0,0 +1,30 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service;
+
+import io.netty.buffer.ByteBuf;
+import org.thingsboard.mqtt.broker.data.Message;
+
+public interface MessageCodec {
+    ByteBuf encode(Message message) throws Exception;
+
+    /**
+     * Encodes the message with the given payload instead of {@link Message#getPayload()}. The payload buffer is released.
+     */
+    ByteBuf encode(Message message, ByteBuf payload) throws Exception;
+
+    Message decode(ByteBuf buf) throws Exception;
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.data.Message;
+import org.thingsboard.mqtt.broker.data.MessageFormat;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Encodes messages either as JSON (readable by brokers and rule engines) or as a fixed-layout binary envelope:
+ * <pre>
+ * | magic (2) | version (1) | flags (1) | publisher id (4) | sequence (8) | create time (8) | intended time (8) | epoch (4) | payload |
+ * </pre>
+ * Decoding detects the format by the magic, so subscribers accept both formats regardless of the configuration.
+ */
+@Slf4j
+@Service
+public class MessageCodecImpl implements MessageCodec {
+
+    static final short MAGIC = 0x5442;
+    static final byte VERSION = 2;
+    static final int HEADER_SIZE = 36;
+
+    private static final byte WARM_UP_FLAG = 0x01;
+
+    private static final int VERSION_OFFSET = 2;
+    private static final int FLAGS_OFFSET = 3;
+    private static final int PUBLISHER_ID_OFFSET = 4;
+    private static final int SEQUENCE_OFFSET = 8;
+    private static final int CREATE_TIME_OFFSET = 16;
+    private static final int INTENDED_TIME_OFFSET = 24;
+    private static final int EPOCH_OFFSET = 32;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    // the payload is not needed for the analysis, so it is skipped instead of being decoded into an array
+    private final ObjectReader messageReader = new ObjectMapper()
+            .addMixIn(Message.class, PayloadIgnoringMixIn.class)
+            .readerFor(Message.class);
+
+    @Value("${test-run.message-format:JSON}")
+    private String messageFormatStr;
+
+    private MessageFormat messageFormat;
+
+    @PostConstruct
+    public void init() {
+        messageFormat = MessageFormat.valueOf(messageFormatStr);
+        log.info("Using {} message format", messageFormat);
+    }
+
+    @Override
+    public ByteBuf encode(Message message) throws Exception {
+        byte[] payload = message.getPayload();
+        return encode(message, payload != null ? Unpooled.wrappedBuffer(payload) : Unpooled.EMPTY_BUFFER);
+    }
+
+    @Override
+    public ByteBuf encode(Message message, ByteBuf payload) throws Exception {
+        if (messageFormat == MessageFormat.JSON) {
+            try {
+                if (message.getPayload() == null) {
+                    message.setPayload(toArray(payload));
+                }
+                ByteBuf buf = ByteBufAllocator.DEFAULT.buffer();
+                try (ByteBufOutputStream out = new ByteBufOutputStream(buf)) {
+                    mapper.writeValue((OutputStream) out, message);
+                } catch (Exception e) {
+                    buf.release();
+                    throw e;
+                }
+                return buf;
+            } finally {
+                payload.release();
+            }
+        }
+        ByteBuf header = ByteBufAllocator.DEFAULT.buffer(HEADER_SIZE);
+        header.writeShort(MAGIC);
+        header.writeByte(VERSION);
+        header.writeByte(message.isWarmUpMsg() ? WARM_UP_FLAG : 0);
+        header.writeInt(message.getPublisherId());
+        header.writeLong(message.getSequence());
+        header.writeLong(message.getCreateTime());
+        header.writeLong(message.getIntendedTime());
+        header.writeInt(message.getEpoch());
+        // the payload is referenced, not copied, the message owns both buffers from now on
+        return ByteBufAllocator.DEFAULT.compositeBuffer(2)
+                .addComponent(true, header)
+                .addComponent(true, payload);
+    }
+
+    @Override
+    public Message decode(ByteBuf buf) throws Exception {
+        int idx = buf.readerIndex();
+        if (buf.readableBytes() < HEADER_SIZE || buf.getShort(idx) != MAGIC) {
+            return messageReader.readValue((InputStream) new ByteBufInputStream(buf.duplicate()));
+        }
+        byte version = buf.getByte(idx + VERSION_OFFSET);
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported message version " + version);
+        }
+        // the payload is not needed for the analysis, so it is neither copied nor exposed
+        return Message.builder()
+                .isWarmUpMsg((buf.getByte(idx + FLAGS_OFFSET) & WARM_UP_FLAG) != 0)
+                .publisherId(buf.getInt(idx + PUBLISHER_ID_OFFSET))
+                .sequence(buf.getLong(idx + SEQUENCE_OFFSET))
+                .createTime(buf.getLong(idx + CREATE_TIME_OFFSET))
+                .intendedTime(buf.getLong(idx + INTENDED_TIME_OFFSET))
+                .epoch(buf.getInt(idx + EPOCH_OFFSET))
+                .build();
+    }
+
+    /**
+     * @return the backing array of the payload if the payload spans all of it, as pooled payloads do, a copy otherwise
+     */
+    private static byte[] toArray(ByteBuf payload) {
+        if (payload.hasArray() && payload.arrayOffset() + payload.readerIndex() == 0 && payload.readableBytes() == payload.array().length) {
+            return payload.array();
+        }
+        return ByteBufUtil.getBytes(payload);
+    }
+
+    @JsonIgnoreProperties("payload")
+    private abstract static class PayloadIgnoringMixIn {
+    }
+}
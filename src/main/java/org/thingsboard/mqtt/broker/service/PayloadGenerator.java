@@ -15,6 +15,17 @@
  */
 package org.thingsboard.mqtt.broker.service;
 
+import io.netty.buffer.ByteBuf;
+
 public interface PayloadGenerator {
+    /**
+     * When the payload pool is enabled the returned array is shared and must not be modified.
+     */
     byte[] generatePayload();
+
+    /**
+     * When the payload pool is enabled returns a duplicate of a pre-rendered buffer that wraps the pooled array,
+     * so no payload bytes are allocated. Releasing the duplicate does not release the pooled buffer.
+     */
+    ByteBuf generatePayloadBuffer();
 }
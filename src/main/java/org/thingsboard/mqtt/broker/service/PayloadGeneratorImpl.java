@@ -15,8 +15,13 @@
  */
 package org.thingsboard.mqtt.broker.service;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.config.TestRunConfiguration;
 
@@ -30,8 +35,46 @@ public class PayloadGeneratorImpl implements PayloadGenerator {
 
     private final TestRunConfiguration testRunConfiguration;
 
+    // payloads of the single payload size of the run, there are no size classes
+    @Value("${test-run.payload-pool-size:0}")
+    private int payloadPoolSize;
+
+    private byte[][] pooledPayloads;
+    private ByteBuf[] pooledPayloadBuffers;
+
+    @PostConstruct
+    public void init() {
+        if (payloadPoolSize <= 0) {
+            return;
+        }
+        pooledPayloads = new byte[payloadPoolSize][];
+        pooledPayloadBuffers = new ByteBuf[payloadPoolSize];
+        for (int i = 0; i < payloadPoolSize; i++) {
+            byte[] payload = renderPayload();
+            pooledPayloads[i] = payload;
+            // backed by the pooled array, so that JSON messages reference the same bytes instead of copying them
+            pooledPayloadBuffers[i] = Unpooled.unreleasableBuffer(Unpooled.wrappedBuffer(payload));
+        }
+        log.info("Pre-rendered {} payloads", payloadPoolSize);
+    }
+
     @Override
     public byte[] generatePayload() {
+        if (pooledPayloads != null) {
+            return pooledPayloads[ThreadLocalRandom.current().nextInt(pooledPayloads.length)];
+        }
+        return renderPayload();
+    }
+
+    @Override
+    public ByteBuf generatePayloadBuffer() {
+        if (pooledPayloadBuffers != null) {
+            return pooledPayloadBuffers[ThreadLocalRandom.current().nextInt(pooledPayloadBuffers.length)].duplicate();
+        }
+        return Unpooled.wrappedBuffer(renderPayload());
+    }
+
+    private byte[] renderPayload() {
         List<String> telemetryKeys = testRunConfiguration.getTelemetryKeys();
         if (telemetryKeys == null || telemetryKeys.isEmpty()) {
             return generateRandomPayload(testRunConfiguration.getMinPayloadSize());
@@ -59,4 +102,13 @@ public class PayloadGeneratorImpl implements PayloadGenerator {
         ThreadLocalRandom.current().nextBytes(payload);
         return payload;
     }
+
+    @PreDestroy
+    public void destroy() {
+        if (pooledPayloadBuffers != null) {
+            for (ByteBuf pooledPayloadBuffer : pooledPayloadBuffers) {
+                pooledPayloadBuffer.unwrap().release();
+            }
+        }
+    }
 }
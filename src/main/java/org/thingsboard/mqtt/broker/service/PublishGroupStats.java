@@ -0,0 +1,127 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service;
+
+import org.thingsboard.mqtt.broker.data.LoadProfile;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flow control counters of a single publisher group
+ */
+public class PublishGroupStats {
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder stepPublished = new LongAdder();
+    private final LoadProfile loadProfile;
+    private final long publishStartNanos;
+
+    private volatile double publishers;
+    private double lastReportSeconds;
+
+    PublishGroupStats(LoadProfile loadProfile, long publishStartNanos) {
+        this.loadProfile = loadProfile;
+        this.publishStartNanos = publishStartNanos;
+    }
+
+    void addPublishers(double publishers) {
+        this.publishers += publishers;
+    }
+
+    void onPublished() {
+        published.increment();
+        stepPublished.increment();
+    }
+
+    void onThrottled() {
+        throttled.increment();
+    }
+
+    void onDropped() {
+        dropped.increment();
+    }
+
+    void onFailed() {
+        failed.increment();
+    }
+
+    public boolean isActive() {
+        return publishers > 0;
+    }
+
+    public LoadProfile getLoadProfile() {
+        return loadProfile;
+    }
+
+    /**
+     * @return the rate the load profile requires right now
+     */
+    public double getCurrentTargetRate() {
+        return loadProfile.getRateAt(getElapsedSeconds()) * publishers;
+    }
+
+    /**
+     * @return the average rate the load profile required since the previous call
+     */
+    public synchronized double getAndResetTargetRate() {
+        double now = getElapsedSeconds();
+        double from = lastReportSeconds;
+        lastReportSeconds = now;
+        return getTargetRate(from, now);
+    }
+
+    /**
+     * @return the average rate the load profile requires between the given moments
+     */
+    public double getTargetRate(double from, double to) {
+        if (to <= from) {
+            return 0;
+        }
+        return (loadProfile.getMessagesUntil(to) - loadProfile.getMessagesUntil(from)) * publishers / (to - from);
+    }
+
+    public long getAndResetPublished() {
+        return published.sumThenReset();
+    }
+
+    public long getAndResetThrottled() {
+        return throttled.sumThenReset();
+    }
+
+    public long getAndResetDropped() {
+        return dropped.sumThenReset();
+    }
+
+    /**
+     * @return messages that could not be handed over to the client since the previous call, e.g. while it is not connected
+     */
+    public long getAndResetFailed() {
+        return failed.sumThenReset();
+    }
+
+    /**
+     * @return messages published since the previous call, reported at the load step boundaries
+     */
+    public long getAndResetStepPublished() {
+        return stepPublished.sumThenReset();
+    }
+
+    public double getElapsedSeconds() {
+        return (System.nanoTime() - publishStartNanos) / 1_000_000_000d;
+    }
+}
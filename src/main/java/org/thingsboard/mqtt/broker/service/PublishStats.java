@@ -19,9 +19,17 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 
+import java.util.Map;
+
 @Getter
 @AllArgsConstructor
 public class PublishStats {
     private final DescriptiveStatistics publishSentLatencyStats;
     private final DescriptiveStatistics publishAcknowledgedStats;
+    private final DescriptiveStatistics publishAcknowledgedCorrectedStats;
+    /**
+     * Delay of the publish ticks behind their schedule in milliseconds, i.e. how late the generator publishes due messages
+     */
+    private final DescriptiveStatistics publishTickLagStats;
+    private final Map<Integer, PublishGroupStats> groupStats;
 }
@@ -22,6 +22,17 @@ public interface PublisherService {
 
     PublishStats startPublishing();
 
+    /**
+     * Starts publishing from every publisher at the given flat rate for the given time, ignoring the configured rates.
+     * The messages are tagged with the given epoch, so that subscribers can ignore late messages of the previous runs
+     */
+    PublishStats startPublishing(double msgsPerSecond, int secondsToRun, int epoch);
+
+    /**
+     * Stops publishing but keeps the publishers connected
+     */
+    void stopPublishing();
+
     void disconnectPublishers();
 
     void printDebugPublishersStats();
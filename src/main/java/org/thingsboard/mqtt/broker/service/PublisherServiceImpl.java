@@ -15,11 +15,11 @@
  */
 package org.thingsboard.mqtt.broker.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.google.common.collect.Iterables;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
@@ -27,32 +27,37 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatistics;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttClient;
+import org.thingsboard.mqtt.broker.client.mqtt.PublishWindowFullException;
 import org.thingsboard.mqtt.broker.config.TestRunClusterConfig;
 import org.thingsboard.mqtt.broker.config.TestRunConfiguration;
+import org.thingsboard.mqtt.broker.data.LoadProfile;
 import org.thingsboard.mqtt.broker.data.Message;
+import org.thingsboard.mqtt.broker.data.PublishOverflowPolicy;
 import org.thingsboard.mqtt.broker.data.PublisherGroup;
 import org.thingsboard.mqtt.broker.data.PublisherInfo;
+import org.thingsboard.mqtt.broker.data.TopicTemplate;
+import org.thingsboard.mqtt.broker.service.orchestration.ClockService;
 import org.thingsboard.mqtt.broker.tests.MqttPerformanceTest;
 import org.thingsboard.mqtt.broker.util.CallbackUtil;
-import org.thingsboard.mqtt.broker.util.ThingsBoardThreadFactory;
+import org.thingsboard.mqtt.broker.util.PerThreadDescriptiveStatistics;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -60,17 +65,17 @@ import java.util.concurrent.atomic.AtomicLong;
 @RequiredArgsConstructor
 public class PublisherServiceImpl implements PublisherService {
 
-    private final ObjectMapper mapper = new ObjectMapper();
-
     private final ClientInitializer clientInitializer;
     private final TestRunConfiguration testRunConfiguration;
     private final ClientIdService clientIdService;
     private final TestRunClusterConfig testRunClusterConfig;
     private final PayloadGenerator payloadGenerator;
     private final ClusterProcessService clusterProcessService;
+    private final MessageCodec messageCodec;
+    private final ClockService clockService;
 
     private final Map<String, PublisherInfo> publisherInfos = new ConcurrentHashMap<>();
-    private final ScheduledExecutorService publishScheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("publish-scheduler"));
+    private final List<ScheduledFuture<?>> publishFutures = new ArrayList<>();
 
     @Value("${test-run.publisher-warmup-count:0}")
     private int publisherWarmUpCount;
@@ -84,14 +89,32 @@ public class PublisherServiceImpl implements PublisherService {
     private int maxTotalClientsPerIteration;
     @Value("${test-run.max_publish_topic_group_idx}")
     private int maxPublishTopicGroupIdx;
-    @Value("${test-run.publish-chunk-size-divider:1}")
-    private int chunkSizeDivider;
+    @Value("${test-run.publish-tick-period-us:1000}")
+    private long tickPeriodUs;
+    @Value("${test-run.publish-open-loop:false}")
+    private boolean openLoop;
+    @Value("${test-run.publish-flush-per-tick:false}")
+    private boolean flushPerTick;
+    @Value("${test-run.publish-overflow-policy:BLOCK}")
+    private String overflowPolicyStr;
+    @Value("${test-run.publish-overflow-queue-size:1000}")
+    private int overflowQueueSize;
+    @Value("${test-run.publish-backlog-size:1000}")
+    private int backlogSize;
 
+    private PublishOverflowPolicy overflowPolicy;
     private boolean stopped = false;
 
+    @PostConstruct
+    public void init() {
+        overflowPolicy = PublishOverflowPolicy.valueOf(overflowPolicyStr);
+    }
+
     @Override
     public void connectPublishers() {
         List<PreConnectedPublisherInfo> preConnectedPublisherInfos = new ArrayList<>();
+        // publishers of the same topic share its encoded bytes
+        Map<String, byte[]> encodedTopics = new HashMap<>();
         int currentPublisherId = 0;
         for (PublisherGroup publisherGroup : testRunConfiguration.getPublishersConfig()) {
             int publisherTopicSuffixIdx = 0;
@@ -99,21 +122,30 @@ public class PublisherServiceImpl implements PublisherService {
                 if (publisherTopicSuffixIdx == maxPublishTopicGroupIdx) {
                     publisherTopicSuffixIdx = 0;
                 }
-                if (currentPublisherId++ % testRunClusterConfig.getParallelTestsCount() == testRunClusterConfig.getSequentialNumber()) {
-                    preConnectedPublisherInfos.add(new PreConnectedPublisherInfo(publisherGroup, i, publisherTopicSuffixIdx));
+                int publisherId = currentPublisherId++;
+                if (publisherId % testRunClusterConfig.getParallelTestsCount() == testRunClusterConfig.getSequentialNumber()) {
+                    String topic = publisherGroup.getTopicTemplate().expand(publisherGroup.getId(), i, publisherTopicSuffixIdx);
+                    byte[] topicBytes = encodedTopics.computeIfAbsent(topic, TopicTemplate::encode);
+                    preConnectedPublisherInfos.add(new PreConnectedPublisherInfo(publisherGroup, i, topic, topicBytes, publisherId));
                 }
                 publisherTopicSuffixIdx++;
             }
         }
+        log.info("Expanded {} distinct publish topics for {} publishers.", encodedTopics.size(), preConnectedPublisherInfos.size());
         clusterProcessService.process("PUBLISHERS_CONNECT", preConnectedPublisherInfos, (latch, preConnectedPublisherInfo) -> {
             PublisherGroup publisherGroup = preConnectedPublisherInfo.getPublisherGroup();
             int publisherIndex = preConnectedPublisherInfo.getPublisherIndex();
             String clientId = clientIdService.createPublisherClientId(publisherGroup, publisherIndex);
-            String topic = publisherGroup.getTopicPrefix() + preConnectedPublisherInfo.getPublisherTopicSuffix();
-            MqttClient pubClient = clientInitializer.createClient(clientId, MqttPerformanceTest.DEFAULT_USER_NAME);
+            String topic = preConnectedPublisherInfo.getTopic();
+            byte[] topicBytes = preConnectedPublisherInfo.getTopicBytes();
+            MqttClient pubClient = clientInitializer.createPublisherClient(clientId, MqttPerformanceTest.DEFAULT_USER_NAME);
+            pubClient.getClientConfig().setTopicAliasEnabled(publisherGroup.isTopicAliasEnabled());
+            if (overflowPolicy == PublishOverflowPolicy.QUEUE) {
+                pubClient.getClientConfig().setMaxQueuedPublishes(overflowQueueSize);
+            }
             clientInitializer.connectClient(CallbackUtil.createConnectCallback(
                             connectResult -> {
-                                publisherInfos.put(clientId, new PublisherInfo(pubClient, clientId, topic,
+                                publisherInfos.put(clientId, new PublisherInfo(pubClient, preConnectedPublisherInfo.getPublisherId(), publisherGroup.getId(), clientId, topic, topicBytes,
                                         publisherGroup.isDebugEnabled() ? new DescriptiveStatistics() : null));
                                 latch.countDown();
                             }, t -> {
@@ -138,8 +170,13 @@ public class PublisherServiceImpl implements PublisherService {
 
             for (PublisherInfo publisherInfo : publisherInfos.values()) {
                 try {
-                    Message message = new Message(System.currentTimeMillis(), true, payloadGenerator.generatePayload());
-                    publisherInfo.getPublisher().publish(publisherInfo.getTopic(), toByteBuf(mapper.writeValueAsBytes(message)),
+                    Message message = Message.builder()
+                            .createTime(System.currentTimeMillis())
+                            .isWarmUpMsg(true)
+                            .payload(payloadGenerator.generatePayload())
+                            .publisherId(publisherInfo.getId())
+                            .build();
+                    publisherInfo.getPublisher().publish(publisherInfo.getTopic(), messageCodec.encode(message),
                             CallbackUtil.createCallback(
                                     warmupCDL::countDown,
                                     t -> {
@@ -172,52 +209,101 @@ public class PublisherServiceImpl implements PublisherService {
 
     @Override
     public PublishStats startPublishing() {
-        final Iterator<PublisherInfo> publisherInfoIterator = Iterables.cycle(publisherInfos.values()).iterator();
-        DescriptiveStatistics publishSentLatencyStats = new DescriptiveStatistics();
-        DescriptiveStatistics publishAcknowledgedStats = new DescriptiveStatistics();
-        AtomicInteger publishedMessagesPerPublisher = new AtomicInteger();
-        int publishPeriodMs = 1000 / testRunConfiguration.getMaxMessagesPerPublisherPerSecond();
-        AtomicLong lastPublishTickTime = new AtomicLong(System.currentTimeMillis());
-
-        int shortenedPublishPeriodMs = publishPeriodMs / chunkSizeDivider;
-
-        int chunkSize;
-        if (maxTotalClientsPerIteration > 0) {
-            chunkSize = maxTotalClientsPerIteration / chunkSizeDivider;
-        } else {
-            chunkSize = publisherInfos.values().size() / chunkSizeDivider;
+        return startPublishing(testRunConfiguration::getPublisherGroupLoadProfile, testRunConfiguration.getSecondsToRun(), 0);
+    }
+
+    @Override
+    public PublishStats startPublishing(double msgsPerSecond, int secondsToRun, int epoch) {
+        LoadProfile loadProfile = LoadProfile.flat(msgsPerSecond);
+        return startPublishing(publisherGroup -> loadProfile, secondsToRun, epoch);
+    }
+
+    private PublishStats startPublishing(Function<PublisherGroup, LoadProfile> loadProfileFunction, int secondsToRun, int epoch) {
+        DescriptiveStatistics publishSentLatencyStats = new SynchronizedDescriptiveStatistics();
+        DescriptiveStatistics publishAcknowledgedStats = new SynchronizedDescriptiveStatistics();
+        DescriptiveStatistics publishAcknowledgedCorrectedStats = new SynchronizedDescriptiveStatistics();
+        // recorded by every event loop on every tick
+        DescriptiveStatistics publishTickLagStats = new PerThreadDescriptiveStatistics();
+
+        Map<EventLoop, List<PublisherInfo>> publishersByEventLoop = groupPublishersByEventLoop();
+        int totalPublishers = publisherInfos.size();
+        // with a limit of publishers per iteration every group publishes only its share of the messages
+        double iterationShare = maxTotalClientsPerIteration > 0 && totalPublishers > 0
+                ? Math.min(1.0, (double) maxTotalClientsPerIteration / totalPublishers) : 1.0;
+        log.info("Publishing from {} event loops, open-loop mode - {}, overflow policy - {}", publishersByEventLoop.size(), openLoop, overflowPolicy);
+        Map<Integer, PublisherGroup> publisherGroupsById = new HashMap<>();
+        Map<Integer, PublishGroupStats> groupStats = new HashMap<>();
+        long publishStartTime = clockService.currentTimestamp();
+        long publishStartNanos = System.nanoTime();
+        for (PublisherGroup publisherGroup : testRunConfiguration.getPublishersConfig()) {
+            publisherGroupsById.put(publisherGroup.getId(), publisherGroup);
+            groupStats.put(publisherGroup.getId(), new PublishGroupStats(loadProfileFunction.apply(publisherGroup), publishStartNanos));
         }
-        log.info("Chunk size is {}", chunkSize);
 
-        publishScheduler.scheduleAtFixedRate(() -> {
-            if (publishedMessagesPerPublisher.getAndIncrement() / chunkSizeDivider >= testRunConfiguration.getTotalPublisherMessagesCount()) {
-                return;
+        publishersByEventLoop.forEach((eventLoop, shardPublishers) -> {
+            Map<Integer, List<PublisherInfo>> shardPublishersByGroup = new HashMap<>();
+            for (PublisherInfo publisherInfo : shardPublishers) {
+                publisherInfo.resetSequence();
+                shardPublishersByGroup.computeIfAbsent(publisherInfo.getGroupId(), groupId -> new ArrayList<>()).add(publisherInfo);
             }
-            long now = System.currentTimeMillis();
-            long actualPublishTickPause = now - lastPublishTickTime.getAndSet(now);
-            if (actualPublishTickPause > publishPeriodMs * 1.5) {
-                if (log.isDebugEnabled()) {
-                    log.debug("Pause between ticks is bigger than expected, expected pause - {} ms, actual pause - {} ms", publishPeriodMs, actualPublishTickPause);
+            List<PublishPacer> pacers = new ArrayList<>();
+            shardPublishersByGroup.forEach((groupId, groupPublishers) -> {
+                PublisherGroup publisherGroup = publisherGroupsById.get(groupId);
+                LoadProfile loadProfile = loadProfileFunction.apply(publisherGroup);
+                double publishersFactor = groupPublishers.size() * iterationShare;
+                long totalMessages = Math.round(Math.round(loadProfile.getMessagesUntil(secondsToRun)) * publishersFactor);
+                if (totalMessages <= 0) {
+                    return;
                 }
+                log.debug("[{}][{}] Publishing {} messages from {} publishers, load profile - {}", eventLoop, groupId, totalMessages, groupPublishers.size(), loadProfile);
+                groupStats.get(groupId).addPublishers(publishersFactor);
+                pacers.add(new PublishPacer(groupPublishers, loadProfile, publishersFactor, totalMessages, publishStartTime, publishStartNanos, groupStats.get(groupId)));
+            });
+
+            PublishShard shard = new PublishShard(pacers, epoch, publishSentLatencyStats, publishAcknowledgedStats, publishAcknowledgedCorrectedStats, publishTickLagStats);
+            ScheduledFuture<?> tickFuture = eventLoop.scheduleAtFixedRate(shard::tick, 0, tickPeriodUs, TimeUnit.MICROSECONDS);
+            shard.setTickFuture(tickFuture);
+            publishFutures.add(tickFuture);
+        });
+        return new PublishStats(publishSentLatencyStats, publishAcknowledgedStats, publishAcknowledgedCorrectedStats, publishTickLagStats, groupStats);
+    }
+
+    private Map<EventLoop, List<PublisherInfo>> groupPublishersByEventLoop() {
+        Map<EventLoop, List<PublisherInfo>> publishersByEventLoop = new HashMap<>();
+        for (PublisherInfo publisherInfo : publisherInfos.values()) {
+            Channel channel = publisherInfo.getPublisher().getChannel();
+            if (channel == null) {
+                log.warn("[{}] Publisher has no channel, skipping it", publisherInfo.getClientId());
+                continue;
             }
-            for (int i = 0; i < chunkSize; i++) {
-                process(publishSentLatencyStats, publishAcknowledgedStats, publisherInfoIterator.next());
-            }
-        }, 0, shortenedPublishPeriodMs, TimeUnit.MILLISECONDS);
-        return new PublishStats(publishSentLatencyStats, publishAcknowledgedStats);
+            publishersByEventLoop.computeIfAbsent(channel.eventLoop(), eventLoop -> new ArrayList<>()).add(publisherInfo);
+        }
+        return publishersByEventLoop;
     }
 
-    private void process(DescriptiveStatistics publishSentLatencyStats, DescriptiveStatistics publishAcknowledgedStats, PublisherInfo publisherInfo) {
+    private Future<Void> process(DescriptiveStatistics publishSentLatencyStats, DescriptiveStatistics publishAcknowledgedStats,
+                         DescriptiveStatistics publishAcknowledgedCorrectedStats, PublisherInfo publisherInfo, int epoch, long intendedTime, boolean flush) {
         try {
-            byte[] payload = payloadGenerator.generatePayload();
-            Message message = new Message(System.currentTimeMillis(), false, payload);
-            byte[] messageBytes = mapper.writeValueAsBytes(message);
-            ChannelFuture publishSentFuture = publisherInfo.getPublisher().publish(publisherInfo.getTopic(), toByteBuf(messageBytes),
+            // message timestamps are in the configured clock domain, on the orchestrator clock for wall clock timestamps,
+            // so that subscribers on other nodes measure the latency on the same clock
+            Message message = Message.builder()
+                    .createTime(clockService.currentTimestamp())
+                    .intendedTime(intendedTime)
+                    .publisherId(publisherInfo.getId())
+                    .sequence(publisherInfo.nextSequence())
+                    .epoch(epoch)
+                    .build();
+            ByteBuf messageBuf = messageCodec.encode(message, payloadGenerator.generatePayloadBuffer());
+            Future<Void> publishSentFuture = publisherInfo.getPublisher().publish(publisherInfo.getEncodedTopic(), messageBuf,
                     CallbackUtil.createCallback(
                             () -> {
-                                long ackLatency = System.currentTimeMillis() - message.getCreateTime();
+                                long now = clockService.currentTimestamp();
+                                long ackLatency = now - message.getCreateTime();
                                 if (statsEnabled) {
                                     publishAcknowledgedStats.addValue(ackLatency);
+                                    if (message.getIntendedTime() > 0) {
+                                        publishAcknowledgedCorrectedStats.addValue(now - message.getIntendedTime());
+                                    }
                                 }
                                 if (publisherInfo.isDebug()) {
                                     publisherInfo.getAcknowledgeLatencyStats().addValue(ackLatency);
@@ -226,14 +312,14 @@ public class PublisherServiceImpl implements PublisherService {
                             },
                             t -> log.error("[{}] Failed to send msg.", publisherInfo.getClientId(), t)
                     ),
-                    testRunConfiguration.getPublisherQoS());
+                    testRunConfiguration.getPublisherQoS(), false, flush);
             publishSentFuture
                     .addListener(future -> {
                                 if (!future.isSuccess()) {
                                     log.debug("[{}] Error sending msg.", publisherInfo.getClientId(), future.cause());
                                 } else {
                                     if (statsEnabled) {
-                                        publishSentLatencyStats.addValue(System.currentTimeMillis() - message.getCreateTime());
+                                        publishSentLatencyStats.addValue(clockService.currentTimestamp() - message.getCreateTime());
                                     }
                                     if (publisherInfo.isDebug()) {
                                         log.debug("[{}] Sent msg with time {}", publisherInfo.getClientId(), message.getCreateTime());
@@ -241,15 +327,23 @@ public class PublisherServiceImpl implements PublisherService {
                                 }
                             }
                     );
+            return publishSentFuture;
         } catch (Exception e) {
             log.error("[{}] Failed to publish", publisherInfo.getClientId(), e);
+            return null;
         }
     }
 
+    @Override
+    public void stopPublishing() {
+        publishFutures.forEach(future -> future.cancel(false));
+        publishFutures.clear();
+    }
+
     @Override
     public void disconnectPublishers() {
         log.info("Disconnecting publishers.");
-        publishScheduler.shutdownNow();
+        stopPublishing();
         for (PublisherInfo publisherInfo : publisherInfos.values()) {
             try {
                 publisherInfo.getPublisher().disconnectAndClose();
@@ -271,16 +365,265 @@ public class PublisherServiceImpl implements PublisherService {
         }
     }
 
-    private static ByteBuf toByteBuf(byte[] bytes) {
-        return Unpooled.wrappedBuffer(bytes);
-    }
-
     @Getter
     @AllArgsConstructor
     private static class PreConnectedPublisherInfo {
         private final PublisherGroup publisherGroup;
         private final int publisherIndex;
-        private final int publisherTopicSuffix;
+        private final String topic;
+        private final byte[] topicBytes;
+        private final int publisherId;
+    }
+
+    /**
+     * Publishers whose channels are registered on the same event loop. Ticks are scheduled on that event loop,
+     * so publishing scales with the number of netty worker threads and writes need no cross-thread hand-off.
+     */
+    private class PublishShard {
+        private final List<PublishPacer> pacers;
+        private final int epoch;
+        private final DescriptiveStatistics publishSentLatencyStats;
+        private final DescriptiveStatistics publishAcknowledgedStats;
+        private final DescriptiveStatistics publishAcknowledgedCorrectedStats;
+        private final DescriptiveStatistics publishTickLagStats;
+        private final List<PublisherInfo> tickPublishers = new ArrayList<>();
+        // set right after scheduling, the shard stops ticking once all of its messages are published
+        private volatile ScheduledFuture<?> tickFuture;
+
+        private long lastPublishTickTime = System.nanoTime();
+        // ticks run at a fixed rate from the moment the shard is scheduled, so this is when the next tick should start
+        private long scheduledTickTime = lastPublishTickTime;
+
+        PublishShard(List<PublishPacer> pacers, int epoch, DescriptiveStatistics publishSentLatencyStats, DescriptiveStatistics publishAcknowledgedStats,
+                     DescriptiveStatistics publishAcknowledgedCorrectedStats, DescriptiveStatistics publishTickLagStats) {
+            this.pacers = pacers;
+            this.epoch = epoch;
+            this.publishSentLatencyStats = publishSentLatencyStats;
+            this.publishAcknowledgedStats = publishAcknowledgedStats;
+            this.publishAcknowledgedCorrectedStats = publishAcknowledgedCorrectedStats;
+            this.publishTickLagStats = publishTickLagStats;
+        }
+
+        void setTickFuture(ScheduledFuture<?> tickFuture) {
+            this.tickFuture = tickFuture;
+        }
+
+        void tick() {
+            long now = System.nanoTime();
+            if (statsEnabled) {
+                publishTickLagStats.addValue(Math.max(0, now - scheduledTickTime) / 1_000_000d);
+            }
+            scheduledTickTime += TimeUnit.MICROSECONDS.toNanos(tickPeriodUs);
+            long actualPublishTickPause = now - lastPublishTickTime;
+            lastPublishTickTime = now;
+            if (actualPublishTickPause > TimeUnit.MICROSECONDS.toNanos(tickPeriodUs) * 1.5) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Pause between ticks is bigger than expected, expected pause - {} us, actual pause - {} us",
+                            tickPeriodUs, TimeUnit.NANOSECONDS.toMicros(actualPublishTickPause));
+                }
+            }
+            for (PublishPacer pacer : pacers) {
+                pacer.publishDue(now, this);
+            }
+            if (flushPerTick) {
+                for (PublisherInfo publisherInfo : tickPublishers) {
+                    publisherInfo.getPublisher().flush();
+                }
+                tickPublishers.clear();
+            }
+            if (tickFuture != null && isFinished()) {
+                tickFuture.cancel(false);
+            }
+        }
+
+        private boolean isFinished() {
+            for (PublishPacer pacer : pacers) {
+                if (!pacer.isFinished()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Token bucket of the publishers of one group within a shard. Tokens accrue continuously following the group load profile
+     * from the high-resolution publish start time, every tick spends the tokens accrued so far, so a message is due
+     * when the cumulative profile reaches it no matter how the ticks are aligned. With the BLOCK policy a message of
+     * a publisher with a full in-flight window goes to the backlog of that publisher, which is published first once
+     * its window frees up, while the other publishers keep publishing on schedule. Once a backlog is full the pacer stops
+     * taking messages from the profile until it frees up, the next tick then spreads the intended times over the stall.
+     */
+    private class PublishPacer {
+        private final List<PublisherInfo> publishers;
+        private final LoadProfile loadProfile;
+        private final double publishersFactor;
+        private final long totalMessages;
+        private final long publishStartTime;
+        private final long publishStartNanos;
+        private final PublishGroupStats groupStats;
+
+        // per publisher, created on the first blocked message
+        private final PublisherBacklog[] backlogs;
+
+        private int nextPublisherIdx;
+        private long processedMessages;
+        private double lastTickSeconds;
+        private double lastTickMessages;
+        private int backloggedPublishers;
+
+        PublishPacer(List<PublisherInfo> publishers, LoadProfile loadProfile, double publishersFactor, long totalMessages,
+                     long publishStartTime, long publishStartNanos, PublishGroupStats groupStats) {
+            this.publishers = publishers;
+            this.loadProfile = loadProfile;
+            this.publishersFactor = publishersFactor;
+            this.totalMessages = totalMessages;
+            this.publishStartTime = publishStartTime;
+            this.publishStartNanos = publishStartNanos;
+            this.groupStats = groupStats;
+            this.backlogs = new PublisherBacklog[publishers.size()];
+        }
+
+        boolean isFinished() {
+            return processedMessages >= totalMessages && backloggedPublishers == 0;
+        }
+
+        void publishDue(long now, PublishShard shard) {
+            if (backloggedPublishers > 0) {
+                publishBacklogs(shard);
+            }
+            double elapsedSeconds = (now - publishStartNanos) / 1_000_000_000d;
+            double tickMessages = loadProfile.getMessagesUntil(elapsedSeconds) * publishersFactor;
+            long dueMessages = Math.min(totalMessages, (long) tickMessages + 1);
+            while (processedMessages < dueMessages) {
+                int publisherIdx = nextPublisherIdx;
+                PublisherInfo publisherInfo = publishers.get(publisherIdx);
+                PublisherBacklog backlog = backlogs[publisherIdx];
+                if (backlog != null && backlog.isFull()) {
+                    // the previous tick stays the start of the interpolation, so the messages taken later keep the times they were due at
+                    return;
+                }
+                // in open-loop mode a late message keeps the time it was due at, so the delay shows up as latency instead of being omitted.
+                // The profile is evaluated once per tick, the times of the messages due within the tick are interpolated between its bounds
+                long intendedTime = 0;
+                if (openLoop) {
+                    double intendedSeconds = tickMessages > lastTickMessages
+                            ? lastTickSeconds + (processedMessages - lastTickMessages) / (tickMessages - lastTickMessages) * (elapsedSeconds - lastTickSeconds)
+                            : elapsedSeconds;
+                    intendedTime = publishStartTime + clockService.fromSeconds(Math.max(lastTickSeconds, intendedSeconds));
+                }
+                processedMessages++;
+                nextPublisherIdx = (nextPublisherIdx + 1) % publishers.size();
+                if (backlog != null && !backlog.isEmpty()) {
+                    // keeps the order of the messages of the publisher
+                    backlog.add(intendedTime);
+                    groupStats.onThrottled();
+                    continue;
+                }
+                boolean windowFull = publisherInfo.getPublisher().isInFlightWindowFull();
+                if (windowFull && overflowPolicy == PublishOverflowPolicy.BLOCK) {
+                    if (backlog == null) {
+                        backlog = backlogs[publisherIdx] = new PublisherBacklog(Math.max(1, backlogSize), openLoop);
+                    }
+                    backlog.add(intendedTime);
+                    backloggedPublishers++;
+                    groupStats.onThrottled();
+                    continue;
+                }
+                if (windowFull && overflowPolicy == PublishOverflowPolicy.DROP) {
+                    groupStats.onDropped();
+                    continue;
+                }
+                publish(shard, publisherInfo, intendedTime);
+                if (windowFull) {
+                    groupStats.onThrottled();
+                }
+            }
+            lastTickSeconds = elapsedSeconds;
+            lastTickMessages = tickMessages;
+        }
+
+        private void publishBacklogs(PublishShard shard) {
+            for (int i = 0; i < backlogs.length; i++) {
+                PublisherBacklog backlog = backlogs[i];
+                if (backlog == null || backlog.isEmpty()) {
+                    continue;
+                }
+                PublisherInfo publisherInfo = publishers.get(i);
+                while (!backlog.isEmpty() && !publisherInfo.getPublisher().isInFlightWindowFull()) {
+                    publish(shard, publisherInfo, backlog.poll());
+                }
+                if (backlog.isEmpty()) {
+                    backloggedPublishers--;
+                }
+            }
+        }
+
+        private void publish(PublishShard shard, PublisherInfo publisherInfo, long intendedTime) {
+            Future<Void> publishSentFuture = process(shard.publishSentLatencyStats, shard.publishAcknowledgedStats, shard.publishAcknowledgedCorrectedStats,
+                    publisherInfo, shard.epoch, intendedTime, !flushPerTick);
+            if (publishSentFuture == null || publishSentFuture.isDone() && !publishSentFuture.isSuccess()) {
+                if (publishSentFuture != null && publishSentFuture.cause() instanceof PublishWindowFullException) {
+                    groupStats.onDropped();
+                } else {
+                    groupStats.onFailed();
+                }
+                return;
+            }
+            groupStats.onPublished();
+            if (flushPerTick) {
+                shard.tickPublishers.add(publisherInfo);
+            }
+        }
+    }
+
+    /**
+     * Messages of a publisher that were due while its in-flight window was full, in the order they were due, up to the capacity.
+     * Only their number is kept unless the intended send times are needed for the open-loop latency.
+     */
+    private static class PublisherBacklog {
+        private final int capacity;
+        private long[] intendedTimes;
+        private int head;
+        private int size;
+
+        PublisherBacklog(int capacity, boolean keepIntendedTimes) {
+            this.capacity = capacity;
+            this.intendedTimes = keepIntendedTimes ? new long[Math.min(16, capacity)] : null;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        boolean isFull() {
+            return size >= capacity;
+        }
+
+        void add(long intendedTime) {
+            if (intendedTimes != null) {
+                if (size == intendedTimes.length) {
+                    long[] grown = new long[Math.min(size * 2, capacity)];
+                    for (int i = 0; i < size; i++) {
+                        grown[i] = intendedTimes[(head + i) % size];
+                    }
+                    intendedTimes = grown;
+                    head = 0;
+                }
+                intendedTimes[(head + size) % intendedTimes.length] = intendedTime;
+            }
+            size++;
+        }
+
+        long poll() {
+            size--;
+            if (intendedTimes == null) {
+                return 0;
+            }
+            long intendedTime = intendedTimes[head];
+            head = (head + 1) % intendedTimes.length;
+            return intendedTime;
+        }
     }
 
     @PreDestroy
@@ -0,0 +1,56 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Received messages and their latency, the time from publishing to receiving a message, of a subscriber group
+ * or of a shared subscription member
+ */
+public class ReceiveLatencyStats {
+    private final LongAdder received = new LongAdder();
+    private final LongAdder latencySum = new LongAdder();
+    private final LongAccumulator maxLatency = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+    void onReceived(long latency) {
+        received.increment();
+        latencySum.add(latency);
+        maxLatency.accumulate(latency);
+    }
+
+    /**
+     * @return received messages, average and max latency since the previous call
+     */
+    public synchronized Snapshot getAndReset() {
+        long count = received.sumThenReset();
+        long sum = latencySum.sumThenReset();
+        long max = maxLatency.getThenReset();
+        return new Snapshot(count, count > 0 ? (double) sum / count : 0, count > 0 ? max : 0);
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        private final long received;
+        private final double avgLatency;
+        private final long maxLatency;
+    }
+}
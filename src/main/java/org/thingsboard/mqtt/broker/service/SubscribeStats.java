@@ -25,4 +25,9 @@ import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 public class SubscribeStats {
     private final DescriptiveStatistics latencyStats;
     private final DescriptiveStatistics msgProcessingLatencyStats;
+    private final DescriptiveStatistics correctedLatencyStats;
+    /**
+     * Latency since the beginning of the current load step, null if no publisher group has a stepped load profile
+     */
+    private final DescriptiveStatistics stepLatencyStats;
 }
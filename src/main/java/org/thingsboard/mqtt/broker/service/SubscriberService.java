@@ -26,7 +26,44 @@ public interface SubscriberService {
 
     SubscriberAnalysisResult analyzeReceivedMessages();
 
+    /**
+     * Analyzes received messages as if every publisher sent the given number of messages
+     */
+    SubscriberAnalysisResult analyzeReceivedMessages(int messagesPerPublisher);
+
+    /**
+     * Forgets the received messages and from now on accepts only the messages published with the given epoch
+     */
+    void resetReceivedMessages(int epoch);
+
+    /**
+     * Waits until the subscribers received all the messages as if every publisher sent the given number of messages
+     *
+     * @return false if some messages were still missing after the timeout
+     */
+    boolean awaitReceivedMessages(int messagesPerPublisher, long timeoutMs) throws InterruptedException;
+
     int calculateTotalExpectedReceivedMessages();
 
     void printDebugSubscribersStats();
+
+    /**
+     * Prints per subscriber group how long subscribers stopped reading from the broker because their messages were not processed fast enough
+     */
+    void printReadPauseStats();
+
+    /**
+     * Prints per subscriber group with a consumption rate limit the consumption rate and the latency since the previous call
+     */
+    void printSlowConsumerStats(int periodSeconds);
+
+    /**
+     * Prints per shared subscription group how the received messages were spread across its members since the previous call
+     */
+    void printSharedSubscriptionStats(int periodSeconds);
+
+    /**
+     * Prints per shared subscription group how all the received messages were spread across its members
+     */
+    void printSharedSubscriptionSummary();
 }
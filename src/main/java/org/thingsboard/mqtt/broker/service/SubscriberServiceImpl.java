@@ -15,8 +15,9 @@
  */
 package org.thingsboard.mqtt.broker.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.netty.buffer.ByteBuf;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
@@ -25,6 +26,7 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Service;
 import org.thingsboard.mqtt.broker.client.mqtt.MqttClient;
+import org.thingsboard.mqtt.broker.client.mqtt.ReadPauseReason;
 import org.thingsboard.mqtt.broker.config.TestRunClusterConfig;
 import org.thingsboard.mqtt.broker.config.TestRunConfiguration;
 import org.thingsboard.mqtt.broker.data.Message;
@@ -34,17 +36,21 @@ import org.thingsboard.mqtt.broker.data.PublisherGroup;
 import org.thingsboard.mqtt.broker.data.SubscriberAnalysisResult;
 import org.thingsboard.mqtt.broker.data.SubscriberGroup;
 import org.thingsboard.mqtt.broker.data.SubscriberInfo;
+import org.thingsboard.mqtt.broker.service.orchestration.ClockService;
 import org.thingsboard.mqtt.broker.tests.MqttPerformanceTest;
 import org.thingsboard.mqtt.broker.util.CallbackUtil;
+import org.thingsboard.mqtt.broker.util.SequenceTracker;
 import org.thingsboard.mqtt.broker.util.TestClusterUtil;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
+import java.util.function.ToIntFunction;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -52,15 +58,22 @@ import java.util.stream.Collectors;
 @Scope(value = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
 @RequiredArgsConstructor
 public class SubscriberServiceImpl implements SubscriberService {
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final long RECEIVED_MESSAGES_POLL_MS = 100;
 
     private final ClientInitializer clientInitializer;
     private final TestRunConfiguration testRunConfiguration;
     private final ClientIdService clientIdService;
     private final TestRunClusterConfig testRunClusterConfig;
     private final ClusterProcessService clusterProcessService;
+    private final MessageCodec messageCodec;
+    private final ClockService clockService;
 
     private final Map<String, SubscriberInfo> subscriberInfos = new ConcurrentHashMap<>();
+    // only for the groups with a consumption rate limit
+    private final Map<Integer, ReceiveLatencyStats> latencyStatsByGroup = new ConcurrentHashMap<>();
+    // only for the shared subscription groups
+    private final Map<Integer, SequenceTracker> sharedSequenceTrackers = new ConcurrentHashMap<>();
+    private final Map<String, ReceiveLatencyStats> sharedMemberStatsByClientId = new ConcurrentHashMap<>();
 
     @Value("${stats.enabled:true}")
     private boolean statsEnabled;
@@ -72,6 +85,15 @@ public class SubscriberServiceImpl implements SubscriberService {
         List<PreConnectedSubscriberInfo> preConnectedSubscriberInfos = TestClusterUtil.getTestNodeSubscribers(testRunConfiguration, testRunClusterConfig);
         log.debug("Found {} preConnectedSubscriberInfos", preConnectedSubscriberInfos);
 
+        for (PreConnectedSubscriberInfo preConnectedSubscriberInfo : preConnectedSubscriberInfos) {
+            SubscriberGroup subscriberGroup = preConnectedSubscriberInfo.getSubscriberGroup();
+            if (subscriberGroup.getMaxReceiveRate() > 0) {
+                latencyStatsByGroup.computeIfAbsent(subscriberGroup.getId(), groupId -> new ReceiveLatencyStats());
+            }
+            if (subscriberGroup.isShared()) {
+                sharedSequenceTrackers.computeIfAbsent(subscriberGroup.getId(), groupId -> new SequenceTracker());
+            }
+        }
         clusterProcessService.process("SUBSCRIBERS_CONNECT", preConnectedSubscriberInfos, (latch, preConnectedSubscriberInfo) -> {
             int subscriberIndex = preConnectedSubscriberInfo.getSubscriberIndex();
             SubscriberGroup subscriberGroup = preConnectedSubscriberInfo.getSubscriberGroup();
@@ -79,7 +101,11 @@ public class SubscriberServiceImpl implements SubscriberService {
             String clientId = clientIdService.createSubscriberClientId(subscriberGroup, subscriberIndex);
             boolean cleanSession = subscriberGroup.getPersistentSessionInfo() == null;
             SubscriberInfo subscriberInfo = new SubscriberInfo(null, subscriberIndex, clientId, new AtomicInteger(0), subscriberGroup,
-                    subscriberGroup.isDebugEnabled() ? new DescriptiveStatistics() : null);
+                    subscriberGroup.isDebugEnabled() ? new DescriptiveStatistics() : null,
+                    sharedSequenceTrackers.get(subscriberGroup.getId()));
+            if (subscriberGroup.isShared()) {
+                sharedMemberStatsByClientId.put(clientId, new ReceiveLatencyStats());
+            }
 
             MqttClient subClient;
             if (subscriberGroup.getPersistentSessionInfo() != null && PersistentClientType.APPLICATION == subscriberGroup.getPersistentSessionInfo().getClientType()) {
@@ -88,6 +114,7 @@ public class SubscriberServiceImpl implements SubscriberService {
                 subClient = getClient(clientId, MqttPerformanceTest.DEFAULT_USER_NAME, cleanSession, subscribeStats, subscriberInfo);
             }
 
+            subClient.getClientConfig().setMaxReceiveRate(subscriberGroup.getMaxReceiveRate());
             clientInitializer.connectClient(CallbackUtil.createConnectCallback(
                             connectResult -> {
                                 subscriberInfo.setSubscriber(subClient);
@@ -104,11 +131,13 @@ public class SubscriberServiceImpl implements SubscriberService {
     }
 
     private MqttClient getClient(String clientId, String defaultUserName, boolean cleanSession, SubscribeStats subscribeStats, SubscriberInfo subscriberInfo) {
-        return clientInitializer.createClient(
+        ReceiveLatencyStats groupLatencyStats = latencyStatsByGroup.get(subscriberInfo.getSubscriberGroup().getId());
+        ReceiveLatencyStats memberStats = sharedMemberStatsByClientId.get(clientId);
+        return clientInitializer.createSubscriberClient(
                 clientId,
                 defaultUserName,
                 cleanSession,
-                (s, mqttMessageByteBuf, receivedTime) -> processReceivedMsg(subscribeStats, subscriberInfo, mqttMessageByteBuf, receivedTime)
+                (s, mqttMessageByteBuf, receivedTime) -> processReceivedMsg(subscribeStats, subscriberInfo, groupLatencyStats, memberStats, mqttMessageByteBuf, receivedTime)
         );
     }
 
@@ -117,26 +146,51 @@ public class SubscriberServiceImpl implements SubscriberService {
         clusterProcessService.process(
                 "SUBSCRIBERS_SUBSCRIBE",
                 new ArrayList<>(subscriberInfos.values()),
-                (latch, subscriberInfo) ->
-                        subscriberInfo.getSubscriber().on(
-                                subscriberInfo.getSubscriberGroup().getTopicFilter(),
-                                (topic, mqttMessageByteBuf, receivedTime) -> processReceivedMsg(subscribeStats, subscriberInfo, mqttMessageByteBuf, receivedTime),
-                                CallbackUtil.createCallback(latch::countDown, t -> latch.countDown()),
-                                testRunConfiguration.getSubscriberQoS()));
+                (latch, subscriberInfo) -> {
+                    ReceiveLatencyStats groupLatencyStats = latencyStatsByGroup.get(subscriberInfo.getSubscriberGroup().getId());
+                    ReceiveLatencyStats memberStats = sharedMemberStatsByClientId.get(subscriberInfo.getClientId());
+                    subscriberInfo.getSubscriber().on(
+                            subscriberInfo.getSubscriberGroup().getTopicFilter(),
+                            (topic, mqttMessageByteBuf, receivedTime) -> processReceivedMsg(subscribeStats, subscriberInfo, groupLatencyStats, memberStats,
+                                    mqttMessageByteBuf, receivedTime),
+                            CallbackUtil.createCallback(latch::countDown, t -> latch.countDown()),
+                            testRunConfiguration.getSubscriberQoS());
+                });
     }
 
-    private void processReceivedMsg(SubscribeStats subscribeStats, SubscriberInfo subscriberInfo, ByteBuf mqttMessageByteBuf, long receivedTime) {
+    private void processReceivedMsg(SubscribeStats subscribeStats, SubscriberInfo subscriberInfo, ReceiveLatencyStats groupLatencyStats,
+                                    ReceiveLatencyStats memberStats, ByteBuf mqttMessageByteBuf, long receivedTime) {
         try {
-            long now = System.currentTimeMillis();
-            byte[] mqttMessageBytes = toBytes(mqttMessageByteBuf);
-            Message message = mapper.readValue(mqttMessageBytes, Message.class);
+            long now = clockService.currentTimestamp();
+            Message message = messageCodec.decode(mqttMessageByteBuf);
             if (message.isWarmUpMsg()) {
                 return;
             }
+            // late messages of a previous publishing run would be taken for the messages of the current one
+            SequenceTracker sharedSequenceTracker = subscriberInfo.getSharedSequenceTracker();
+            if (sharedSequenceTracker != null
+                    && !sharedSequenceTracker.onMessage(message.getEpoch(), message.getPublisherId(), message.getSequence())) {
+                return;
+            }
+            if (!subscriberInfo.getSequenceTracker().onMessage(message.getEpoch(), message.getPublisherId(), message.getSequence())) {
+                return;
+            }
             long msgLatency = receivedTime - message.getCreateTime();
             if (statsEnabled) {
                 subscribeStats.getLatencyStats().addValue(msgLatency);
                 subscribeStats.getMsgProcessingLatencyStats().addValue(now - receivedTime);
+                if (subscribeStats.getStepLatencyStats() != null) {
+                    subscribeStats.getStepLatencyStats().addValue(msgLatency);
+                }
+                if (message.getIntendedTime() > 0) {
+                    subscribeStats.getCorrectedLatencyStats().addValue(receivedTime - message.getIntendedTime());
+                }
+            }
+            if (groupLatencyStats != null) {
+                groupLatencyStats.onReceived(msgLatency);
+            }
+            if (memberStats != null) {
+                memberStats.onReceived(msgLatency);
             }
             if (subscriberInfo.getLatencyStats() != null) {
                 subscriberInfo.getLatencyStats().addValue(msgLatency);
@@ -164,29 +218,104 @@ public class SubscriberServiceImpl implements SubscriberService {
     public SubscriberAnalysisResult analyzeReceivedMessages() {
         Map<Integer, PublisherGroup> publisherGroupsById = testRunConfiguration.getPublishersConfig().stream()
                 .collect(Collectors.toMap(PublisherGroup::getId, Function.identity()));
+        return analyzeReceivedMessages(subscriberGroup -> maxTotalClientsPerIteration > 0
+                ? maxTotalClientsPerIteration * testRunConfiguration.getSecondsToRun()
+                : getSubscriberExpectedReceivedMsgs(publisherGroupsById, subscriberGroup));
+    }
+
+    @Override
+    public SubscriberAnalysisResult analyzeReceivedMessages(int messagesPerPublisher) {
+        return analyzeReceivedMessages(getExpectedReceivedMsgsFunction(messagesPerPublisher));
+    }
+
+    @Override
+    public boolean awaitReceivedMessages(int messagesPerPublisher, long timeoutMs) throws InterruptedException {
+        ToIntFunction<SubscriberGroup> expectedReceivedMsgsFunction = getExpectedReceivedMsgsFunction(messagesPerPublisher);
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (analyzeReceivedMessages(expectedReceivedMsgsFunction).getLostMessages() > 0) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(RECEIVED_MESSAGES_POLL_MS);
+        }
+        return true;
+    }
+
+    private ToIntFunction<SubscriberGroup> getExpectedReceivedMsgsFunction(int messagesPerPublisher) {
+        Map<Integer, PublisherGroup> publisherGroupsById = testRunConfiguration.getPublishersConfig().stream()
+                .collect(Collectors.toMap(PublisherGroup::getId, Function.identity()));
+        return subscriberGroup -> maxTotalClientsPerIteration > 0
+                ? maxTotalClientsPerIteration * messagesPerPublisher
+                : subscriberGroup.getExpectedPublisherGroups().stream()
+                .map(publisherGroupsById::get)
+                .filter(Objects::nonNull)
+                .mapToInt(publisherGroup -> publisherGroup.getPublishers() * messagesPerPublisher)
+                .sum();
+    }
+
+    @Override
+    public void resetReceivedMessages(int epoch) {
+        for (SubscriberInfo subscriberInfo : subscriberInfos.values()) {
+            subscriberInfo.getTotalReceivedMsgs().set(0);
+            subscriberInfo.getSequenceTracker().reset(epoch);
+        }
+        sharedSequenceTrackers.values().forEach(sequenceTracker -> sequenceTracker.reset(epoch));
+    }
+
+    private SubscriberAnalysisResult analyzeReceivedMessages(ToIntFunction<SubscriberGroup> expectedReceivedMsgsFunction) {
         int lostMessages = 0;
         int duplicatedMessages = 0;
+        long expectedMessages = 0;
+        long outOfOrderMessages = 0;
+        long outOfWindowMessages = 0;
+        long maxSequenceGap = 0;
+        long staleMessages = 0;
+
+        // a shared subscription group is expected to receive every message once as a whole, other subscribers - each
+        List<MessageReceiver> receivers = new ArrayList<>();
+        Map<Integer, SubscriberGroup> sharedGroups = new LinkedHashMap<>();
         for (SubscriberInfo subscriberInfo : subscriberInfos.values()) {
-            int expectedReceivedMsgs;
-            if (maxTotalClientsPerIteration > 0) {
-                expectedReceivedMsgs = maxTotalClientsPerIteration * testRunConfiguration.getSecondsToRun();
+            SubscriberGroup subscriberGroup = subscriberInfo.getSubscriberGroup();
+            if (subscriberGroup.isShared()) {
+                sharedGroups.putIfAbsent(subscriberGroup.getId(), subscriberGroup);
+                // members get the messages of a publisher interleaved, so the order is only meaningful within a member
+                // and the sequences other members received are no gap
+                outOfOrderMessages += subscriberInfo.getSequenceTracker().getOutOfOrderMessages();
+                outOfWindowMessages += subscriberInfo.getSequenceTracker().getOutOfWindowMessages();
             } else {
-                expectedReceivedMsgs = getSubscriberExpectedReceivedMsgs(testRunConfiguration.getTotalPublisherMessagesCount(), publisherGroupsById, subscriberInfo.getSubscriberGroup());
-            }
-            int actualReceivedMsgs = subscriberInfo.getTotalReceivedMsgs().get();
-            if (actualReceivedMsgs != expectedReceivedMsgs) {
-                log.trace("[{}] Expected messages count - {}, actual messages count - {}",
-                        subscriberInfo.getClientId(), expectedReceivedMsgs, actualReceivedMsgs);
-                if (expectedReceivedMsgs > actualReceivedMsgs) {
-                    lostMessages += expectedReceivedMsgs - actualReceivedMsgs;
-                } else {
-                    duplicatedMessages += actualReceivedMsgs - expectedReceivedMsgs;
-                }
+                receivers.add(new MessageReceiver(subscriberInfo.getClientId(), subscriberGroup, subscriberInfo.getSequenceTracker(), true));
+            }
+        }
+        sharedGroups.forEach((groupId, subscriberGroup) ->
+                receivers.add(new MessageReceiver(subscriberGroup.getTopicFilter(), subscriberGroup, sharedSequenceTrackers.get(groupId), false)));
+
+        for (MessageReceiver receiver : receivers) {
+            int expectedReceivedMsgs = expectedReceivedMsgsFunction.applyAsInt(receiver.getSubscriberGroup());
+            expectedMessages += expectedReceivedMsgs;
+            SequenceTracker sequenceTracker = receiver.getSequenceTracker();
+            // duplicates are counted by their sequence numbers, so a lost message can not be hidden by a duplicated one
+            long distinctReceivedMsgs = sequenceTracker.getDistinctMessages();
+            if (distinctReceivedMsgs != expectedReceivedMsgs || sequenceTracker.getDuplicatedMessages() > 0) {
+                log.trace("[{}] Expected messages count - {}, distinct messages count - {}, duplicated messages count - {}",
+                        receiver.getName(), expectedReceivedMsgs, distinctReceivedMsgs, sequenceTracker.getDuplicatedMessages());
+            }
+            lostMessages += (int) Math.max(0, expectedReceivedMsgs - distinctReceivedMsgs);
+            duplicatedMessages += (int) sequenceTracker.getDuplicatedMessages();
+            if (receiver.isOrderTracked()) {
+                outOfOrderMessages += sequenceTracker.getOutOfOrderMessages();
+                outOfWindowMessages += sequenceTracker.getOutOfWindowMessages();
+                maxSequenceGap = Math.max(maxSequenceGap, sequenceTracker.getMaxGap());
             }
+            staleMessages += sequenceTracker.getStaleMessages();
         }
         return SubscriberAnalysisResult.builder()
                 .lostMessages(lostMessages)
                 .duplicatedMessages(duplicatedMessages)
+                .expectedMessages(expectedMessages)
+                .outOfOrderMessages(outOfOrderMessages)
+                .outOfWindowMessages(outOfWindowMessages)
+                .maxSequenceGap(maxSequenceGap)
+                .staleMessages(staleMessages)
                 .build();
     }
 
@@ -195,7 +324,8 @@ public class SubscriberServiceImpl implements SubscriberService {
         Map<Integer, PublisherGroup> publisherGroupsById = testRunConfiguration.getPublishersConfig().stream()
                 .collect(Collectors.toMap(PublisherGroup::getId, Function.identity()));
         return testRunConfiguration.getSubscribersConfig().stream()
-                .mapToInt(subscriberGroup -> subscriberGroup.getSubscribers() * getSubscriberExpectedReceivedMsgs(testRunConfiguration.getTotalPublisherMessagesCount(), publisherGroupsById, subscriberGroup))
+                .mapToInt(subscriberGroup -> (subscriberGroup.isShared() ? 1 : subscriberGroup.getSubscribers())
+                        * getSubscriberExpectedReceivedMsgs(publisherGroupsById, subscriberGroup))
                 .sum();
     }
 
@@ -210,22 +340,129 @@ public class SubscriberServiceImpl implements SubscriberService {
         }
     }
 
-    private int getSubscriberExpectedReceivedMsgs(int totalProducerMessagesCount, Map<Integer, PublisherGroup> publisherGroupsById, SubscriberGroup subscriberGroup) {
+    @Override
+    public void printReadPauseStats() {
+        Map<Integer, List<SubscriberInfo>> subscribersByGroup = subscriberInfos.values().stream()
+                .collect(Collectors.groupingBy(subscriberInfo -> subscriberInfo.getSubscriberGroup().getId()));
+        subscribersByGroup.forEach((groupId, groupSubscribers) -> {
+            long pausedSubscribers = 0;
+            long pauses = 0;
+            long totalPausedNanos = 0;
+            long maxPausedNanos = 0;
+            for (SubscriberInfo subscriberInfo : groupSubscribers) {
+                MqttClient subscriber = subscriberInfo.getSubscriber();
+                if (subscriber == null || subscriber.getReadPauses(ReadPauseReason.BACKPRESSURE) == 0) {
+                    continue;
+                }
+                long pausedNanos = subscriber.getReadPausedNanos(ReadPauseReason.BACKPRESSURE);
+                pausedSubscribers++;
+                pauses += subscriber.getReadPauses(ReadPauseReason.BACKPRESSURE);
+                totalPausedNanos += pausedNanos;
+                maxPausedNanos = Math.max(maxPausedNanos, pausedNanos);
+            }
+            if (pausedSubscribers == 0) {
+                return;
+            }
+            log.info("[{}] Subscriber group read pauses: paused subscribers - {} of {}, pauses - {}, total paused time - {} s, " +
+                            "avg paused time per paused subscriber - {} s, max paused time - {} s.",
+                    groupId, pausedSubscribers, groupSubscribers.size(), pauses, totalPausedNanos / 1_000_000_000d,
+                    totalPausedNanos / 1_000_000_000d / pausedSubscribers, maxPausedNanos / 1_000_000_000d);
+        });
+    }
+
+    @Override
+    public void printSlowConsumerStats(int periodSeconds) {
+        latencyStatsByGroup.forEach((groupId, groupLatencyStats) -> {
+            ReceiveLatencyStats.Snapshot snapshot = groupLatencyStats.getAndReset();
+            long pacingPauses = 0;
+            long pacingPausedNanos = 0;
+            long subscribers = 0;
+            for (SubscriberInfo subscriberInfo : subscriberInfos.values()) {
+                if (subscriberInfo.getSubscriberGroup().getId() == groupId && subscriberInfo.getSubscriber() != null) {
+                    subscribers++;
+                    pacingPauses += subscriberInfo.getSubscriber().getReadPauses(ReadPauseReason.PACING);
+                    pacingPausedNanos += subscriberInfo.getSubscriber().getReadPausedNanos(ReadPauseReason.PACING);
+                }
+            }
+            log.info("[{}] Slow consumer group stats: consumption rate - {} msg/s, latency avg - {} {}, latency max - {} {}, " +
+                            "pacing pauses in total - {}, avg paused time per subscriber in total - {} s.",
+                    groupId, (double) snapshot.getReceived() / periodSeconds,
+                    snapshot.getAvgLatency(), clockService.getTimestampMode().getUnitName(), snapshot.getMaxLatency(), clockService.getTimestampMode().getUnitName(),
+                    pacingPauses, subscribers > 0 ? pacingPausedNanos / 1_000_000_000d / subscribers : 0);
+        });
+    }
+
+    @Override
+    public void printSharedSubscriptionStats(int periodSeconds) {
+        getSharedGroupMembers().forEach((groupId, members) -> {
+            DescriptiveStatistics memberRates = new DescriptiveStatistics();
+            DescriptiveStatistics memberAvgLatencies = new DescriptiveStatistics();
+            long maxLatency = 0;
+            int idleMembers = 0;
+            for (SubscriberInfo member : members) {
+                ReceiveLatencyStats.Snapshot snapshot = sharedMemberStatsByClientId.get(member.getClientId()).getAndReset();
+                memberRates.addValue((double) snapshot.getReceived() / periodSeconds);
+                if (snapshot.getReceived() == 0) {
+                    idleMembers++;
+                    continue;
+                }
+                memberAvgLatencies.addValue(snapshot.getAvgLatency());
+                maxLatency = Math.max(maxLatency, snapshot.getMaxLatency());
+            }
+            String unitName = clockService.getTimestampMode().getUnitName();
+            log.info("[{}] Shared subscription group stats: members - {}, idle members - {}, group rate - {} msg/s, " +
+                            "member rate min - {} msg/s, avg - {} msg/s, max - {} msg/s, coefficient of variation - {}, " +
+                            "member avg latency min - {} {}, max - {} {}, max latency - {} {}.",
+                    groupId, members.size(), idleMembers, memberRates.getSum(),
+                    memberRates.getMin(), memberRates.getMean(), memberRates.getMax(), getCoefficientOfVariation(memberRates),
+                    memberAvgLatencies.getN() > 0 ? memberAvgLatencies.getMin() : 0, unitName, memberAvgLatencies.getN() > 0 ? memberAvgLatencies.getMax() : 0, unitName,
+                    maxLatency, unitName);
+        });
+    }
+
+    @Override
+    public void printSharedSubscriptionSummary() {
+        getSharedGroupMembers().forEach((groupId, members) -> {
+            DescriptiveStatistics memberReceivedMsgs = new DescriptiveStatistics();
+            for (SubscriberInfo member : members) {
+                int receivedMsgs = member.getTotalReceivedMsgs().get();
+                memberReceivedMsgs.addValue(receivedMsgs);
+                log.debug("[{}] Shared subscription member received {} messages", member.getClientId(), receivedMsgs);
+            }
+            SequenceTracker sequenceTracker = sharedSequenceTrackers.get(groupId);
+            log.info("[{}] Shared subscription group distribution: members - {}, distinct received messages - {}, duplicated messages - {}, " +
+                            "member received messages min - {}, avg - {}, max - {}, coefficient of variation - {}, max to avg ratio - {}.",
+                    groupId, members.size(), sequenceTracker.getDistinctMessages(), sequenceTracker.getDuplicatedMessages(),
+                    memberReceivedMsgs.getMin(), memberReceivedMsgs.getMean(), memberReceivedMsgs.getMax(), getCoefficientOfVariation(memberReceivedMsgs),
+                    memberReceivedMsgs.getMean() > 0 ? memberReceivedMsgs.getMax() / memberReceivedMsgs.getMean() : 0);
+        });
+    }
+
+    private Map<Integer, List<SubscriberInfo>> getSharedGroupMembers() {
+        return subscriberInfos.values().stream()
+                .filter(subscriberInfo -> subscriberInfo.getSubscriberGroup().isShared())
+                .collect(Collectors.groupingBy(subscriberInfo -> subscriberInfo.getSubscriberGroup().getId()));
+    }
+
+    // 0 when the load is spread evenly across the members of a group
+    private static double getCoefficientOfVariation(DescriptiveStatistics stats) {
+        return stats.getMean() > 0 ? Math.sqrt(stats.getPopulationVariance()) / stats.getMean() : 0;
+    }
+
+    private int getSubscriberExpectedReceivedMsgs(Map<Integer, PublisherGroup> publisherGroupsById, SubscriberGroup subscriberGroup) {
         return subscriberGroup.getExpectedPublisherGroups().stream()
                 .map(publisherGroupsById::get)
                 .filter(Objects::nonNull)
-                .map(PublisherGroup::getPublishers)
-                .mapToInt(Integer::intValue)
-                .map(publishersInGroup -> publishersInGroup * totalProducerMessagesCount)
+                .mapToInt(publisherGroup -> publisherGroup.getPublishers() * testRunConfiguration.getPublisherGroupMessagesCount(publisherGroup))
                 .sum();
     }
 
-
-    private static byte[] toBytes(ByteBuf inbound) {
-        byte[] bytes = new byte[inbound.readableBytes()];
-        int readerIndex = inbound.readerIndex();
-        inbound.getBytes(readerIndex, bytes);
-        return bytes;
+    @Getter
+    @AllArgsConstructor
+    private static class MessageReceiver {
+        private final String name;
+        private final SubscriberGroup subscriberGroup;
+        private final SequenceTracker sequenceTracker;
+        private final boolean orderTracked;
     }
-
 }
@@ -0,0 +1,52 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.orchestration;
+
+import org.thingsboard.mqtt.broker.data.ClockOffset;
+import org.thingsboard.mqtt.broker.data.TimestampMode;
+
+/**
+ * Timestamps of messages in the configured clock domain. In the wall clock mode the time of the test nodes is aligned to the orchestrator clock,
+ * so that latency measured across nodes is not skewed by their clock offset. Without an offset from the orchestrator the local clock is used as is.
+ */
+public interface ClockService {
+    long localTimeMicros();
+
+    TimestampMode getTimestampMode();
+
+    /**
+     * @return current timestamp in the units of the timestamp mode
+     */
+    long currentTimestamp();
+
+    /**
+     * @return the given number of seconds in the units of the timestamp mode
+     */
+    long fromSeconds(double seconds);
+
+    /**
+     * @return the given timestamp difference in milliseconds
+     */
+    double toMillis(double timestampDiff);
+
+    void updateOffset(ClockOffset clockOffset);
+
+    /**
+     * @return the last offset received from the orchestrator or null if the clock was not synchronized. During a run the applied
+     * offset is slewed toward it, so it may differ from the applied one by up to the drift since the previous offset
+     */
+    ClockOffset getOffset();
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.orchestration;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.data.ClockOffset;
+import org.thingsboard.mqtt.broker.data.TimestampMode;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The first offset from the orchestrator is applied at once, before the run starts. Later offsets are slewed, the applied offset moves
+ * toward them by a millisecond at a time at no more than the max slew rate, so that wall clock timestamps never jump during a run.
+ */
+@Slf4j
+@Service
+public class ClockServiceImpl implements ClockService {
+
+    @Value("${test-run.timestamp-mode:WALL_CLOCK}")
+    private String timestampModeStr;
+    @Value("${test-run.clock-sync.max-slew-ppm:500}")
+    private int maxSlewPpm;
+
+    @Getter
+    private TimestampMode timestampMode;
+    private boolean monotonic;
+    private long anchorMicros;
+    private long anchorNanos;
+
+    private volatile ClockOffset clockOffset;
+    private volatile long offsetMillis;
+    private volatile long targetOffsetMillis;
+    // when the applied offset moves by the next millisecond toward the target, Long.MAX_VALUE while they are equal
+    private volatile long nextSlewMillis = Long.MAX_VALUE;
+
+    @PostConstruct
+    public void init() {
+        timestampMode = TimestampMode.valueOf(timestampModeStr);
+        monotonic = timestampMode == TimestampMode.MONOTONIC;
+        anchorMicros = localTimeMicros();
+        anchorNanos = System.nanoTime();
+        log.info("Using {} timestamps in {}", timestampMode, timestampMode.getUnitName());
+    }
+
+    @Override
+    public long localTimeMicros() {
+        Instant now = Instant.now();
+        return TimeUnit.SECONDS.toMicros(now.getEpochSecond()) + TimeUnit.NANOSECONDS.toMicros(now.getNano());
+    }
+
+    @Override
+    public long currentTimestamp() {
+        if (monotonic) {
+            return anchorMicros + (System.nanoTime() - anchorNanos) / 1000;
+        }
+        long now = System.currentTimeMillis();
+        if (now >= nextSlewMillis) {
+            slewOffset(now);
+        }
+        return now - offsetMillis;
+    }
+
+    @Override
+    public long fromSeconds(double seconds) {
+        return (long) (seconds * timestampMode.getTimeUnit().convert(1, TimeUnit.SECONDS));
+    }
+
+    @Override
+    public double toMillis(double timestampDiff) {
+        return monotonic ? timestampDiff / 1000 : timestampDiff;
+    }
+
+    @Override
+    public synchronized void updateOffset(ClockOffset clockOffset) {
+        long newOffsetMillis = Math.round(clockOffset.getOffsetMicros() / 1000.0);
+        if (this.clockOffset == null) {
+            log.info("Clock offset from the orchestrator - {} us, error bound - {} us.", clockOffset.getOffsetMicros(), clockOffset.getErrorMicros());
+            if (monotonic) {
+                log.warn("Monotonic timestamps are not aligned to the orchestrator clock, latency is valid only for publishers and subscribers on the same node.");
+            }
+            offsetMillis = newOffsetMillis;
+            targetOffsetMillis = newOffsetMillis;
+        } else {
+            log.debug("Clock offset from the orchestrator - {} us, error bound - {} us.", clockOffset.getOffsetMicros(), clockOffset.getErrorMicros());
+        }
+        if (this.clockOffset != null && maxSlewPpm > 0) {
+            targetOffsetMillis = newOffsetMillis;
+            if (nextSlewMillis == Long.MAX_VALUE && offsetMillis != newOffsetMillis) {
+                nextSlewMillis = System.currentTimeMillis() + getSlewIntervalMillis();
+            }
+        }
+        this.clockOffset = clockOffset;
+    }
+
+    private synchronized void slewOffset(long now) {
+        if (now < nextSlewMillis) {
+            return;
+        }
+        offsetMillis += Long.signum(targetOffsetMillis - offsetMillis);
+        nextSlewMillis = offsetMillis == targetOffsetMillis ? Long.MAX_VALUE : now + getSlewIntervalMillis();
+    }
+
+    // a millisecond of offset per interval is the max slew rate
+    private long getSlewIntervalMillis() {
+        return Math.max(1, 1_000_000 / maxSlewPpm);
+    }
+
+    @Override
+    public ClockOffset getOffset() {
+        return clockOffset;
+    }
+}
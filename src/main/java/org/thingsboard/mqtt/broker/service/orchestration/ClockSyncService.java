@@ -0,0 +1,29 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.orchestration;
+
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+
+public interface ClockSyncService {
+    /**
+     * Estimates the clock offsets of the nodes in the background and sends them to the nodes, then keeps resynchronizing them
+     * periodically until the next set of nodes is synchronized or a node stops responding.
+     *
+     * @return a future completed once the first offsets are sent, so that the run can start on a common clock
+     */
+    CompletableFuture<Void> syncNodes(Collection<String> nodeUrls);
+}
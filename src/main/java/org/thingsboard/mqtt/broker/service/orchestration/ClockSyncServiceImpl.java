@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.service.orchestration;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.thingsboard.mqtt.broker.data.ClockOffset;
+import org.thingsboard.mqtt.broker.util.ThingsBoardThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the offset of every node clock from the orchestrator clock the way NTP does: the orchestrator reads the node clock
+ * and assumes it was read in the middle of the round trip. The sample with the shortest round trip is used,
+ * and half of its round trip is the error bound of the estimate. The round trips run on a dedicated thread, so that the node
+ * ready requests are not held by them.
+ */
+@Slf4j
+@Service
+@Profile("orchestrator")
+@RequiredArgsConstructor
+public class ClockSyncServiceImpl implements ClockSyncService {
+
+    private final TestRestService testRestService;
+    private final ClockService clockService;
+
+    @Value("${test-run.clock-sync.enabled:true}")
+    private boolean enabled;
+    @Value("${test-run.clock-sync.samples:8}")
+    private int samples;
+    @Value("${test-run.clock-sync.period-seconds:30}")
+    private int periodSeconds;
+
+    private final Set<String> syncedNodeUrls = ConcurrentHashMap.newKeySet();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("clock-sync"));
+        if (periodSeconds > 0) {
+            scheduler.scheduleAtFixedRate(this::resyncNodes, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> syncNodes(Collection<String> nodeUrls) {
+        if (!enabled) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // the caller may reuse the collection once this returns
+        List<String> nodesToSync = new ArrayList<>(nodeUrls);
+        return CompletableFuture.runAsync(() -> {
+            syncedNodeUrls.clear();
+            for (String nodeUrl : nodesToSync) {
+                ClockOffset clockOffset = syncNode(nodeUrl);
+                if (clockOffset != null) {
+                    log.info("[{}] Estimated clock offset - {} us, error bound - {} us.", nodeUrl, clockOffset.getOffsetMicros(), clockOffset.getErrorMicros());
+                    syncedNodeUrls.add(nodeUrl);
+                }
+            }
+        }, scheduler);
+    }
+
+    private void resyncNodes() {
+        for (String nodeUrl : syncedNodeUrls) {
+            if (syncNode(nodeUrl) == null) {
+                log.info("Stopped clock synchronization of {} node.", nodeUrl);
+                syncedNodeUrls.remove(nodeUrl);
+            }
+        }
+    }
+
+    private ClockOffset syncNode(String nodeUrl) {
+        try {
+            ClockOffset best = null;
+            for (int i = 0; i < samples; i++) {
+                long requestTime = clockService.localTimeMicros();
+                long nodeTime = testRestService.getNodeTimeMicros(nodeUrl);
+                long responseTime = clockService.localTimeMicros();
+                long roundTrip = responseTime - requestTime;
+                ClockOffset sample = new ClockOffset(nodeTime - (requestTime + roundTrip / 2), (roundTrip + 1) / 2);
+                if (best == null || sample.getErrorMicros() < best.getErrorMicros()) {
+                    best = sample;
+                }
+            }
+            if (best == null) {
+                return null;
+            }
+            log.debug("[{}] Estimated clock offset - {} us, error bound - {} us.", nodeUrl, best.getOffsetMicros(), best.getErrorMicros());
+            testRestService.sendClockOffset(nodeUrl, best);
+            return best;
+        } catch (Exception e) {
+            log.warn("[{}] Failed to synchronize node clock", nodeUrl, e);
+            return null;
+        }
+    }
+}
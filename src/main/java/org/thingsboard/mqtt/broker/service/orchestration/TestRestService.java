@@ -15,8 +15,14 @@
  */
 package org.thingsboard.mqtt.broker.service.orchestration;
 
+import org.thingsboard.mqtt.broker.data.ClockOffset;
+
 public interface TestRestService {
     void notifyClusterIsReady(String nodeUrl);
 
     boolean notifyNodeIsReady();
+
+    long getNodeTimeMicros(String nodeUrl);
+
+    void sendClockOffset(String nodeUrl, ClockOffset clockOffset);
 }
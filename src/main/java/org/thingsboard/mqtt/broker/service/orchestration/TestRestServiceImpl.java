@@ -27,6 +27,7 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.client.RestTemplate;
 import org.thingsboard.mqtt.broker.config.TestRunClusterConfig;
 import org.thingsboard.mqtt.broker.controller.ClusterConst;
+import org.thingsboard.mqtt.broker.data.ClockOffset;
 import org.thingsboard.mqtt.broker.data.NodeInfo;
 import org.thingsboard.mqtt.broker.data.TestType;
 import org.thingsboard.mqtt.broker.service.ServiceHelper;
@@ -78,6 +79,20 @@ public class TestRestServiceImpl implements TestRestService {
         restTemplate.postForLocation(nodeUrl, "OK");
     }
 
+    @Override
+    public long getNodeTimeMicros(String nodeUrl) {
+        Long nodeTime = restTemplate.getForObject(nodeUrl + ClusterConst.CLOCK_PATH, Long.class);
+        if (nodeTime == null) {
+            throw new IllegalStateException("Empty clock response from " + nodeUrl);
+        }
+        return nodeTime;
+    }
+
+    @Override
+    public void sendClockOffset(String nodeUrl, ClockOffset clockOffset) {
+        restTemplate.postForLocation(nodeUrl + ClusterConst.CLOCK_OFFSET_PATH, clockOffset);
+    }
+
     @Override
     public boolean notifyNodeIsReady() {
         if (StringUtils.isEmpty(orchestratorUrl) || StringUtils.isEmpty(targetNodeUrl)) {
@@ -15,7 +15,7 @@
  */
 package org.thingsboard.mqtt.broker.tests;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
 import io.netty.util.ResourceLeakDetector;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -25,24 +25,34 @@ import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.thingsboard.mqtt.broker.client.mqtt.MqttClientStats;
+import org.thingsboard.mqtt.broker.client.mqtt.MqttPublishStageStats;
+import org.thingsboard.mqtt.broker.config.TestRunClusterConfig;
 import org.thingsboard.mqtt.broker.config.TestRunConfiguration;
 import org.thingsboard.mqtt.broker.data.ClientCredentialsType;
+import org.thingsboard.mqtt.broker.data.ClockOffset;
 import org.thingsboard.mqtt.broker.data.Message;
 import org.thingsboard.mqtt.broker.data.PersistentClientType;
 import org.thingsboard.mqtt.broker.data.PublisherGroup;
 import org.thingsboard.mqtt.broker.data.SubscriberAnalysisResult;
 import org.thingsboard.mqtt.broker.data.SubscriberGroup;
+import org.thingsboard.mqtt.broker.data.TimestampMode;
 import org.thingsboard.mqtt.broker.data.dto.MqttClientCredentialsDto;
+import org.thingsboard.mqtt.broker.service.ClientInitializer;
 import org.thingsboard.mqtt.broker.service.DummyClientService;
+import org.thingsboard.mqtt.broker.service.MessageCodec;
 import org.thingsboard.mqtt.broker.service.PayloadGenerator;
 import org.thingsboard.mqtt.broker.service.PersistedMqttClientService;
+import org.thingsboard.mqtt.broker.service.PublishGroupStats;
 import org.thingsboard.mqtt.broker.service.PublishStats;
 import org.thingsboard.mqtt.broker.service.PublisherService;
 import org.thingsboard.mqtt.broker.service.SubscribeStats;
 import org.thingsboard.mqtt.broker.service.SubscriberService;
 import org.thingsboard.mqtt.broker.service.TbBrokerRestService;
+import org.thingsboard.mqtt.broker.service.orchestration.ClockService;
 import org.thingsboard.mqtt.broker.service.orchestration.ClusterSynchronizer;
 import org.thingsboard.mqtt.broker.service.orchestration.TestRestService;
+import org.thingsboard.mqtt.broker.util.PerThreadDescriptiveStatistics;
 import org.thingsboard.mqtt.broker.util.ThingsBoardThreadFactory;
 import org.thingsboard.mqtt.broker.util.ValidationUtil;
 
@@ -57,8 +67,8 @@ import java.util.concurrent.TimeUnit;
 @RequiredArgsConstructor
 public class MqttPerformanceTest {
 
-    private static final ObjectMapper mapper = new ObjectMapper();
     public static final String DEFAULT_USER_NAME = "default";
+    private static final double MIN_LOAD_STEP_SECONDS = 0.001;
 
     private final DummyClientService dummyClientService;
     private final SubscriberService subscriberService;
@@ -68,11 +78,17 @@ public class MqttPerformanceTest {
     private final PayloadGenerator payloadGenerator;
     private final TestRestService testRestService;
     private final ClusterSynchronizer clusterSynchronizer;
+    private final ClockService clockService;
+    private final MessageCodec messageCodec;
+    private final ClientInitializer clientInitializer;
+    private final TestRunClusterConfig testRunClusterConfig;
 
     @Autowired(required = false)
     private TbBrokerRestService tbBrokerRestService;
 
     private ScheduledExecutorService latencyScheduler;
+    // the regular run publishes with epoch 0, every throughput search phase with the next one
+    private int throughputSearchEpoch;
 
     @Value("${mqtt.netty.leak_detector_level}")
     private String leakDetectorLevel;
@@ -86,6 +102,26 @@ public class MqttPerformanceTest {
     private int maxTotalClientsPerIteration;
     @Value("${stats.period:60}")
     private int period;
+    @Value("${test-run.publish-open-loop:false}")
+    private boolean openLoop;
+    @Value("${test-run.throughput-search.enabled:false}")
+    private boolean throughputSearchEnabled;
+    @Value("${test-run.throughput-search.min-rate:1}")
+    private double throughputSearchMinRate;
+    @Value("${test-run.throughput-search.max-rate:100}")
+    private double throughputSearchMaxRate;
+    @Value("${test-run.throughput-search.phases:8}")
+    private int throughputSearchPhases;
+    @Value("${test-run.throughput-search.phase-seconds:30}")
+    private int throughputSearchPhaseSeconds;
+    @Value("${test-run.throughput-search.drain-seconds:10}")
+    private int throughputSearchDrainSeconds;
+    @Value("${test-run.throughput-search.slo.p99-latency-ms:1000}")
+    private double sloP99LatencyMs;
+    @Value("${test-run.throughput-search.slo.p99-ack-latency-ms:1000}")
+    private double sloP99AckLatencyMs;
+    @Value("${test-run.throughput-search.slo.max-loss-ratio:0}")
+    private double sloMaxLossRatio;
 
     @PostConstruct
     public void init() throws Exception {
@@ -111,7 +147,9 @@ public class MqttPerformanceTest {
         Thread.sleep(2000);
         persistedMqttClientService.initApplicationClients();
 
-        SubscribeStats subscribeStats = new SubscribeStats(new DescriptiveStatistics(), new DescriptiveStatistics());
+        // received messages are processed on several threads (shards or event loops), every thread records into its own recorder
+        SubscribeStats subscribeStats = new SubscribeStats(new PerThreadDescriptiveStatistics(), new PerThreadDescriptiveStatistics(),
+                new PerThreadDescriptiveStatistics(), hasLoadSteps() ? new PerThreadDescriptiveStatistics() : null);
 
         subscriberService.connectSubscribers(subscribeStats);
 
@@ -132,17 +170,19 @@ public class MqttPerformanceTest {
             clusterSynchronizer.awaitClusterReady();
         }
 
-        log.info("Start msg publishing.");
-        PublishStats publishStats = publisherService.startPublishing();
-        DescriptiveStatistics acknowledgedStats = publishStats.getPublishAcknowledgedStats();
-        DescriptiveStatistics sentStats = publishStats.getPublishSentLatencyStats();
-
-        latencyScheduler.scheduleAtFixedRate(() -> {
-            printLatencyStats(generalLatencyStats, msgProcessingLatencyStats, acknowledgedStats, sentStats);
-            clearStats(generalLatencyStats, msgProcessingLatencyStats, acknowledgedStats, sentStats);
-        }, period, period, TimeUnit.SECONDS);
+        boolean throughputSearch = throughputSearchEnabled;
+        if (throughputSearch && testRunClusterConfig.getParallelTestsCount() > 1) {
+            log.error("Throughput search is supported only with a single test node, running a regular test instead.");
+            throughputSearch = false;
+        }
 
-        Thread.sleep(TimeUnit.SECONDS.toMillis(testRunConfiguration.getSecondsToRun() + testRunConfiguration.getAdditionalSecondsToWait()));
+        PublishStats publishStats = null;
+        if (throughputSearch) {
+            runThroughputSearch(subscribeStats);
+        } else {
+            log.info("Start msg publishing.");
+            publishStats = runPublishing(subscribeStats);
+        }
 
         subscriberService.disconnectSubscribers();
         publisherService.disconnectPublishers();
@@ -153,14 +193,21 @@ public class MqttPerformanceTest {
 
         persistedMqttClientService.clearPersistedSessions();
 
-        SubscriberAnalysisResult analysisResult = subscriberService.analyzeReceivedMessages();
-        log.info("Messages stats: lost messages - {}, duplicated messages - {}.",
-                analysisResult.getLostMessages(), analysisResult.getDuplicatedMessages()
-        );
-        printLatencyStats(generalLatencyStats, msgProcessingLatencyStats, acknowledgedStats, sentStats);
+        if (publishStats != null) {
+            SubscriberAnalysisResult analysisResult = subscriberService.analyzeReceivedMessages();
+            log.info("Messages stats: lost messages - {}, duplicated messages - {}, out-of-order messages - {}, out-of-window messages - {}, max sequence gap - {}.",
+                    analysisResult.getLostMessages(), analysisResult.getDuplicatedMessages(), analysisResult.getOutOfOrderMessages(),
+                    analysisResult.getOutOfWindowMessages(), analysisResult.getMaxSequenceGap()
+            );
+            printLatencyStats(generalLatencyStats, msgProcessingLatencyStats, publishStats.getPublishAcknowledgedStats(), publishStats.getPublishSentLatencyStats());
+            printCorrectedLatencyStats(subscribeStats, publishStats);
+            printClockOffset(orchestratorNotified);
+        }
 
         publisherService.printDebugPublishersStats();
         subscriberService.printDebugSubscribersStats();
+        subscriberService.printReadPauseStats();
+        subscriberService.printSharedSubscriptionSummary();
 
         // wait for all MQTT clients to close
         Thread.sleep(waitTimeClientsClosedMs);
@@ -171,12 +218,155 @@ public class MqttPerformanceTest {
         log.info("Performance test finished.");
     }
 
+    private PublishStats runPublishing(SubscribeStats subscribeStats) throws InterruptedException {
+        DescriptiveStatistics generalLatencyStats = subscribeStats.getLatencyStats();
+        DescriptiveStatistics msgProcessingLatencyStats = subscribeStats.getMsgProcessingLatencyStats();
+        PublishStats publishStats = publisherService.startPublishing();
+        DescriptiveStatistics acknowledgedStats = publishStats.getPublishAcknowledgedStats();
+        DescriptiveStatistics sentStats = publishStats.getPublishSentLatencyStats();
+
+        latencyScheduler.scheduleAtFixedRate(() -> {
+            printLatencyStats(generalLatencyStats, msgProcessingLatencyStats, acknowledgedStats, sentStats);
+            printCorrectedLatencyStats(subscribeStats, publishStats);
+            printOutboundStats();
+            printPublishStageStats(publishStats);
+            printPublishGroupStats(publishStats);
+            subscriberService.printSlowConsumerStats(period);
+            subscriberService.printSharedSubscriptionStats(period);
+            clearStats(generalLatencyStats, msgProcessingLatencyStats, acknowledgedStats, sentStats);
+            clearCorrectedStats(subscribeStats, publishStats);
+        }, period, period, TimeUnit.SECONDS);
+        if (subscribeStats.getStepLatencyStats() != null) {
+            scheduleStepStats(subscribeStats, publishStats, 0);
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(testRunConfiguration.getSecondsToRun() + testRunConfiguration.getAdditionalSecondsToWait()));
+        return publishStats;
+    }
+
+    private boolean hasLoadSteps() {
+        for (PublisherGroup publisherGroup : testRunConfiguration.getPublishersConfig()) {
+            if (testRunConfiguration.getPublisherGroupLoadProfile(publisherGroup).getNextStepSeconds(0) < testRunConfiguration.getSecondsToRun()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Schedules the stats of the load step that starts at the given moment to be printed when the earliest next step
+     * of any publisher group begins, so that latency and achieved rates are reported for every step separately
+     */
+    private void scheduleStepStats(SubscribeStats subscribeStats, PublishStats publishStats, double stepStartSeconds) {
+        int secondsToRun = testRunConfiguration.getSecondsToRun();
+        if (stepStartSeconds >= secondsToRun) {
+            return;
+        }
+        double stepEndSeconds = Math.min(secondsToRun, getNextLoadStepSeconds(publishStats, stepStartSeconds));
+        double elapsedSeconds = publishStats.getGroupStats().values().iterator().next().getElapsedSeconds();
+        latencyScheduler.schedule(() -> {
+            printStepStats(subscribeStats, publishStats, stepStartSeconds, stepEndSeconds);
+            scheduleStepStats(subscribeStats, publishStats, stepEndSeconds);
+        }, Math.max(0, Math.round((stepEndSeconds - elapsedSeconds) * 1000)), TimeUnit.MILLISECONDS);
+    }
+
+    private double getNextLoadStepSeconds(PublishStats publishStats, double stepStartSeconds) {
+        double nextStepSeconds = Double.MAX_VALUE;
+        for (PublishGroupStats groupStats : publishStats.getGroupStats().values()) {
+            if (groupStats.isActive()) {
+                // boundaries closer than the minimal step are merged, which also keeps rounding errors from repeating a boundary
+                nextStepSeconds = Math.min(nextStepSeconds, groupStats.getLoadProfile().getNextStepSeconds(stepStartSeconds + MIN_LOAD_STEP_SECONDS));
+            }
+        }
+        return nextStepSeconds;
+    }
+
+    private void printStepStats(SubscribeStats subscribeStats, PublishStats publishStats, double stepStartSeconds, double stepEndSeconds) {
+        DescriptiveStatistics stepLatencyStats = subscribeStats.getStepLatencyStats();
+        log.info("Load step {} - {} s latency stats ({}): received messages - {}, median - {}, 95th - {}, 99th - {}, max - {}.",
+                stepStartSeconds, stepEndSeconds, clockService.getTimestampMode().getUnitName(), stepLatencyStats.getN(),
+                stepLatencyStats.getPercentile(50), stepLatencyStats.getPercentile(95), stepLatencyStats.getPercentile(99), stepLatencyStats.getMax());
+        stepLatencyStats.clear();
+        publishStats.getGroupStats().forEach((groupId, groupStats) -> {
+            if (!groupStats.isActive()) {
+                return;
+            }
+            log.info("[{}] Load step {} - {} s publisher group stats: target rate - {} msg/s, achieved rate - {} msg/s.", groupId,
+                    stepStartSeconds, stepEndSeconds, groupStats.getTargetRate(stepStartSeconds, stepEndSeconds),
+                    groupStats.getAndResetStepPublished() / (stepEndSeconds - stepStartSeconds));
+        });
+    }
+
+    /**
+     * Binary search of the highest publish rate that still meets the SLO. Every phase publishes at a flat rate for a fixed time
+     * over the already open connections, waits for in-flight messages to drain and judges latency and loss of that phase only.
+     */
+    private void runThroughputSearch(SubscribeStats subscribeStats) throws InterruptedException {
+        log.info("Start throughput search between {} and {} msg/s per publisher, SLO: p99 latency - {} ms, p99 acknowledged latency - {} ms, max loss ratio - {}.",
+                throughputSearchMinRate, throughputSearchMaxRate, sloP99LatencyMs, sloP99AckLatencyMs, sloMaxLossRatio);
+        if (!runThroughputPhase(subscribeStats, throughputSearchMinRate)) {
+            log.info("Throughput search finished: min rate {} msg/s per publisher does not meet the SLO.", throughputSearchMinRate);
+            return;
+        }
+        double low = throughputSearchMinRate;
+        double high = throughputSearchMaxRate;
+        if (runThroughputPhase(subscribeStats, high)) {
+            low = high;
+        } else {
+            for (int i = 0; i < throughputSearchPhases; i++) {
+                double rate = (low + high) / 2;
+                if (runThroughputPhase(subscribeStats, rate)) {
+                    low = rate;
+                } else {
+                    high = rate;
+                }
+            }
+        }
+        int totalPublishers = testRunConfiguration.getPublishersConfig().stream().mapToInt(PublisherGroup::getPublishers).sum();
+        log.info("Throughput search finished: max sustainable rate - {} msg/s per publisher, {} msg/s in total.", low, low * totalPublishers);
+    }
+
+    private boolean runThroughputPhase(SubscribeStats subscribeStats, double rate) throws InterruptedException {
+        log.info("Start throughput search phase with {} msg/s per publisher.", rate);
+        // messages of the previous phases that are still in flight are ignored by their epoch
+        int epoch = ++throughputSearchEpoch;
+        subscriberService.resetReceivedMessages(epoch);
+        subscribeStats.getLatencyStats().clear();
+        subscribeStats.getMsgProcessingLatencyStats().clear();
+        subscribeStats.getCorrectedLatencyStats().clear();
+
+        int messagesPerPublisher = (int) Math.round(rate * throughputSearchPhaseSeconds);
+        PublishStats publishStats = publisherService.startPublishing(rate, throughputSearchPhaseSeconds, epoch);
+        Thread.sleep(TimeUnit.SECONDS.toMillis(throughputSearchPhaseSeconds));
+        if (!subscriberService.awaitReceivedMessages(messagesPerPublisher, TimeUnit.SECONDS.toMillis(throughputSearchDrainSeconds))) {
+            log.info("Throughput search phase with {} msg/s per publisher did not drain in {} s.", rate, throughputSearchDrainSeconds);
+        }
+        publisherService.stopPublishing();
+
+        SubscriberAnalysisResult analysisResult = subscriberService.analyzeReceivedMessages(messagesPerPublisher);
+        // in open-loop mode the corrected latency also accounts for messages the publishers failed to send in time
+        DescriptiveStatistics latencyStats = openLoop ? subscribeStats.getCorrectedLatencyStats() : subscribeStats.getLatencyStats();
+        DescriptiveStatistics acknowledgedStats = openLoop ? publishStats.getPublishAcknowledgedCorrectedStats() : publishStats.getPublishAcknowledgedStats();
+        double p99Latency = latencyStats.getN() > 0 ? clockService.toMillis(latencyStats.getPercentile(99)) : 0;
+        double p99AckLatency = acknowledgedStats.getN() > 0 ? clockService.toMillis(acknowledgedStats.getPercentile(99)) : 0;
+        double lossRatio = analysisResult.getExpectedMessages() > 0 ? (double) analysisResult.getLostMessages() / analysisResult.getExpectedMessages() : 0;
+        boolean passed = p99Latency <= sloP99LatencyMs && p99AckLatency <= sloP99AckLatencyMs && lossRatio <= sloMaxLossRatio;
+        log.info("Throughput search phase with {} msg/s per publisher {}: p99 latency - {} ms, p99 acknowledged latency - {} ms, " +
+                        "loss ratio - {}, lost messages - {}, duplicated messages - {}, out-of-order messages - {}, max sequence gap - {}, " +
+                        "ignored messages of previous phases - {}.",
+                rate, passed ? "meets the SLO" : "violates the SLO", p99Latency, p99AckLatency, lossRatio,
+                analysisResult.getLostMessages(), analysisResult.getDuplicatedMessages(), analysisResult.getOutOfOrderMessages(),
+                analysisResult.getMaxSequenceGap(), analysisResult.getStaleMessages());
+        return passed;
+    }
+
     private void printLatencyStats(DescriptiveStatistics generalLatencyStats, DescriptiveStatistics msgProcessingLatencyStats,
                                    DescriptiveStatistics acknowledgedStats, DescriptiveStatistics sentStats) {
-        log.info("Latency stats: median - {}, avg - {}, max - {}, min - {}, 95th - {}, total received messages - {}, " +
+        log.info("Latency stats ({}, {} clock): median - {}, avg - {}, max - {}, min - {}, 95th - {}, total received messages - {}, " +
                         "publish sent messages - {}, publish sent latency avg - {}, publish sent latency max - {}, " +
                         "publish acknowledged messages - {}, publish acknowledged latency median - {}, publish acknowledged latency avg - {}, publish acknowledged latency max - {}, " +
                         "publish acknowledged latency 95th - {}, msg processing latency max - {}.",
+                clockService.getTimestampMode().getUnitName(), clockService.getTimestampMode(),
                 generalLatencyStats.getPercentile(50),
                 generalLatencyStats.getMean(), generalLatencyStats.getMax(),
                 generalLatencyStats.getMin(), generalLatencyStats.getPercentile(95),
@@ -187,6 +377,100 @@ public class MqttPerformanceTest {
         );
     }
 
+    private void printOutboundStats() {
+        printOutboundStats("Publisher", clientInitializer.getPublisherClientStats());
+        printOutboundStats("Subscriber", clientInitializer.getSubscriberClientStats());
+    }
+
+    private void printOutboundStats(String clientType, MqttClientStats clientStats) {
+        long outboundPackets = clientStats.getAndResetOutboundPackets();
+        long socketFlushes = clientStats.getAndResetSocketFlushes();
+        long retransmissions = clientStats.getAndResetRetransmissions();
+        long outboundBytes = clientStats.getAndResetOutboundBytes();
+        long aliasedPublishes = clientStats.getAndResetAliasedPublishes();
+        long topicAliasSavedBytes = clientStats.getAndResetTopicAliasSavedBytes();
+        log.info("{} outbound stats: packets - {}, socket flushes - {}, flushes per packet - {}, retransmissions - {}, bytes per second - {}.",
+                clientType, outboundPackets, socketFlushes, outboundPackets > 0 ? (double) socketFlushes / outboundPackets : 0, retransmissions, outboundBytes / period);
+        if (aliasedPublishes > 0) {
+            log.info("Topic alias stats: aliased publishes - {}, saved bytes - {}, saved bytes per publish - {}.",
+                    aliasedPublishes, topicAliasSavedBytes, (double) topicAliasSavedBytes / aliasedPublishes);
+        }
+    }
+
+    /**
+     * Splits the publish latency into stages: how late the generator ticks are, how long a PUBLISH takes from the pipeline
+     * to the socket and how long it takes from the socket to the acknowledgement (network and broker)
+     */
+    private void printPublishStageStats(PublishStats publishStats) {
+        DescriptiveStatistics tickLagStats = publishStats.getPublishTickLagStats();
+        log.info("Publish stage latency (ms): generator tick lag - median {}, 99th {}, max {}.",
+                tickLagStats.getPercentile(50), tickLagStats.getPercentile(99), tickLagStats.getMax());
+        tickLagStats.clear();
+        MqttPublishStageStats stageStats = clientInitializer.getPublishStageStats();
+        if (stageStats == null) {
+            return;
+        }
+        DescriptiveStatistics pipelineToSocketStats = stageStats.getPipelineToSocketStats();
+        DescriptiveStatistics socketToAckStats = stageStats.getSocketToAckStats();
+        log.info("Publish stage latency (ms): pipeline to socket - messages {}, median {}, 99th {}, max {}; " +
+                        "socket to acknowledgement (network and broker) - messages {}, median {}, 99th {}, max {}.",
+                pipelineToSocketStats.getN(), pipelineToSocketStats.getPercentile(50), pipelineToSocketStats.getPercentile(99), pipelineToSocketStats.getMax(),
+                socketToAckStats.getN(), socketToAckStats.getPercentile(50), socketToAckStats.getPercentile(99), socketToAckStats.getMax());
+        stageStats.clear();
+    }
+
+    private void printPublishGroupStats(PublishStats publishStats) {
+        publishStats.getGroupStats().forEach((groupId, groupStats) -> {
+            if (!groupStats.isActive()) {
+                return;
+            }
+            long published = groupStats.getAndResetPublished();
+            long throttled = groupStats.getAndResetThrottled();
+            long dropped = groupStats.getAndResetDropped();
+            long failed = groupStats.getAndResetFailed();
+            log.info("[{}] Publisher group stats: current target rate - {} msg/s, period target rate - {} msg/s, achieved rate - {} msg/s, " +
+                            "throttled publishes - {}, dropped publishes - {}, failed publishes - {}.",
+                    groupId, groupStats.getCurrentTargetRate(), groupStats.getAndResetTargetRate(), (double) published / period, throttled, dropped, failed);
+        });
+    }
+
+    private void printClockOffset(boolean orchestratorNotified) {
+        if (clockService.getTimestampMode() == TimestampMode.MONOTONIC) {
+            log.info("Latency is measured with monotonic timestamps of every node, messages from other nodes are not comparable.");
+            return;
+        }
+        ClockOffset clockOffset = clockService.getOffset();
+        if (clockOffset == null) {
+            if (orchestratorNotified) {
+                log.warn("Clock is not synchronized with the orchestrator, latency of messages from other nodes includes their clock offset.");
+            }
+            return;
+        }
+        // latency across nodes is off by at most the error bounds of both the publishing and the receiving node
+        log.info("Clock offset from the orchestrator - {} ms, error bound - {} ms.",
+                clockOffset.getOffsetMicros() / 1000.0, clockOffset.getErrorMicros() / 1000.0);
+    }
+
+    private void printCorrectedLatencyStats(SubscribeStats subscribeStats, PublishStats publishStats) {
+        if (!openLoop) {
+            return;
+        }
+        DescriptiveStatistics correctedLatencyStats = subscribeStats.getCorrectedLatencyStats();
+        DescriptiveStatistics acknowledgedCorrectedStats = publishStats.getPublishAcknowledgedCorrectedStats();
+        log.info("Corrected latency stats ({}, {} clock, from intended send time): median - {}, avg - {}, max - {}, 95th - {}, 99th - {}, " +
+                        "publish acknowledged latency median - {}, publish acknowledged latency max - {}, publish acknowledged latency 99th - {}.",
+                clockService.getTimestampMode().getUnitName(), clockService.getTimestampMode(),
+                correctedLatencyStats.getPercentile(50), correctedLatencyStats.getMean(), correctedLatencyStats.getMax(),
+                correctedLatencyStats.getPercentile(95), correctedLatencyStats.getPercentile(99),
+                acknowledgedCorrectedStats.getPercentile(50), acknowledgedCorrectedStats.getMax(), acknowledgedCorrectedStats.getPercentile(99)
+        );
+    }
+
+    private void clearCorrectedStats(SubscribeStats subscribeStats, PublishStats publishStats) {
+        subscribeStats.getCorrectedLatencyStats().clear();
+        publishStats.getPublishAcknowledgedCorrectedStats().clear();
+    }
+
     private void clearStats(DescriptiveStatistics generalLatencyStats, DescriptiveStatistics msgProcessingLatencyStats,
                             DescriptiveStatistics acknowledgedStats, DescriptiveStatistics sentStats) {
         generalLatencyStats.clear();
@@ -236,10 +520,19 @@ public class MqttPerformanceTest {
             totalPublishedMessages = maxTotalClientsPerIteration * testRunConfiguration.getTotalPublisherMessagesCount();
             totalExpectedReceivedMessages = totalPublishedMessages;
         } else {
-            totalPublishedMessages = totalPublishers * testRunConfiguration.getTotalPublisherMessagesCount();
+            totalPublishedMessages = publisherGroups.stream()
+                    .mapToInt(publisherGroup -> publisherGroup.getPublishers() * testRunConfiguration.getPublisherGroupMessagesCount(publisherGroup))
+                    .sum();
             totalExpectedReceivedMessages = subscriberService.calculateTotalExpectedReceivedMessages();
         }
-        Message randomMsg = new Message(System.currentTimeMillis(), true, payloadGenerator.generatePayload());
+        Message randomMsg = Message.builder()
+                .createTime(System.currentTimeMillis())
+                .isWarmUpMsg(true)
+                .payload(payloadGenerator.generatePayload())
+                .build();
+        ByteBuf randomMsgBuf = messageCodec.encode(randomMsg);
+        int msgBytesSize = randomMsgBuf.readableBytes();
+        randomMsgBuf.release();
         log.info("Test run info: publishers - {}, non-persistent subscribers - {}, regular persistent subscribers - {}, " +
                         "'APPLICATION' persistent subscribers - {}, dummy client connections - {}, " +
                         "publisher QoS - {}, subscriber QoS - {}, max messages per second - {}, " +
@@ -249,7 +542,7 @@ public class MqttPerformanceTest {
                 persistedApplicationsSubscribers, testRunConfiguration.getNumberOfDummyClients(),
                 testRunConfiguration.getPublisherQoS(), testRunConfiguration.getSubscriberQoS(), testRunConfiguration.getMaxMessagesPerPublisherPerSecond(),
                 testRunConfiguration.getSecondsToRun(), totalPublishedMessages, totalExpectedReceivedMessages,
-                mapper.writeValueAsBytes(randomMsg).length);
+                msgBytesSize);
     }
 
     @PreDestroy
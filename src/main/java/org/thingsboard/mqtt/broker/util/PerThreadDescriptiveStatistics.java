@@ -0,0 +1,133 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.util;
+
+import lombok.AllArgsConstructor;
+import org.apache.commons.math3.stat.descriptive.SynchronizedDescriptiveStatistics;
+import org.apache.commons.math3.stat.descriptive.UnivariateStatistic;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Statistics recorded by many threads at a high rate. Every thread adds values to its own recorder,
+ * and the recorders are merged into the statistics when they are read, so writers do not contend on a single lock.
+ */
+public class PerThreadDescriptiveStatistics extends SynchronizedDescriptiveStatistics {
+    private static final long serialVersionUID = 2961373525384563092L;
+    private static final int RECORDER_CAPACITY = 4096;
+
+    private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Recorder> threadRecorder = ThreadLocal.withInitial(() -> {
+        Recorder recorder = new Recorder();
+        recorders.add(recorder);
+        return recorder;
+    });
+
+    @Override
+    public void addValue(double v) {
+        double[] fullValues = threadRecorder.get().add(v);
+        if (fullValues != null) {
+            addValues(fullValues, fullValues.length);
+        }
+    }
+
+    @Override
+    public synchronized double apply(UnivariateStatistic stat) {
+        mergeRecorders();
+        return super.apply(stat);
+    }
+
+    @Override
+    public synchronized long getN() {
+        mergeRecorders();
+        return super.getN();
+    }
+
+    @Override
+    public synchronized double getElement(int index) {
+        mergeRecorders();
+        return super.getElement(index);
+    }
+
+    @Override
+    public synchronized double[] getValues() {
+        mergeRecorders();
+        return super.getValues();
+    }
+
+    @Override
+    public synchronized void clear() {
+        for (Recorder recorder : recorders) {
+            recorder.drain();
+        }
+        super.clear();
+    }
+
+    private synchronized void addValues(double[] values, int count) {
+        for (int i = 0; i < count; i++) {
+            super.addValue(values[i]);
+        }
+    }
+
+    private void mergeRecorders() {
+        for (Recorder recorder : recorders) {
+            Recorder.Drained drained = recorder.drain();
+            if (drained != null) {
+                addValues(drained.values, drained.count);
+            }
+        }
+    }
+
+    /**
+     * Values of one thread. The lock is only contended when the values are merged, and it is never held
+     * while the statistics are locked by the writer, so the locks are always taken in the same order.
+     */
+    private static class Recorder {
+        private double[] values = new double[RECORDER_CAPACITY];
+        private int count;
+
+        /**
+         * @return the recorded values if the recorder got full and has to be merged by the caller
+         */
+        synchronized double[] add(double v) {
+            values[count++] = v;
+            if (count < values.length) {
+                return null;
+            }
+            double[] fullValues = values;
+            values = new double[RECORDER_CAPACITY];
+            count = 0;
+            return fullValues;
+        }
+
+        synchronized Drained drain() {
+            if (count == 0) {
+                return null;
+            }
+            Drained drained = new Drained(values, count);
+            values = new double[RECORDER_CAPACITY];
+            count = 0;
+            return drained;
+        }
+
+        @AllArgsConstructor
+        private static class Drained {
+            private final double[] values;
+            private final int count;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.util;
+
+import io.netty.util.collection.IntObjectHashMap;
+import io.netty.util.collection.IntObjectMap;
+
+/**
+ * Tracks the sequence numbers a subscriber received from every publisher, so that duplicates, reordering and gaps are counted exactly
+ * instead of being inferred from the total number of messages.
+ * <p>
+ * Every publisher is tracked by the sequence below which everything is accounted for and the highest received sequence.
+ * Only while messages are missing or arrive out of order a ring bitmap of the next {@value #WINDOW_SIZE} sequences is kept,
+ * doubled up to {@value #MAX_WINDOW_SIZE} sequences when a message arrives further ahead, so messages received in order cost
+ * no allocation and the memory stays bounded whatever is lost. A message beyond the largest window slides it, the skipped
+ * missing sequences stay lost, and when one of them still arrives later it is counted as out of window, since it can not be told
+ * apart from a duplicate any more.
+ * <p>
+ * Sequences start over with every publishing run, so only the messages of the current epoch are tracked and late messages
+ * of a previous run are counted as stale instead of being mistaken for the messages of the current one.
+ */
+public class SequenceTracker {
+    private static final int WINDOW_SIZE = 1024;
+    private static final int MAX_WINDOW_SIZE = 4 * WINDOW_SIZE;
+
+    private final IntObjectMap<PublisherSequence> publisherSequences = new IntObjectHashMap<>();
+
+    private int epoch;
+    private long receivedMessages;
+    private long duplicatedMessages;
+    private long outOfOrderMessages;
+    private long outOfWindowMessages;
+    private long staleMessages;
+    private long maxGap;
+
+    /**
+     * @return false if the message belongs to another epoch and is ignored
+     */
+    public synchronized boolean onMessage(int epoch, int publisherId, long sequence) {
+        if (epoch != this.epoch) {
+            staleMessages++;
+            return false;
+        }
+        PublisherSequence publisherSequence = publisherSequences.get(publisherId);
+        if (publisherSequence == null) {
+            publisherSequence = new PublisherSequence();
+            publisherSequences.put(publisherId, publisherSequence);
+        }
+        receivedMessages++;
+        publisherSequence.onMessage(sequence);
+        return true;
+    }
+
+    public synchronized long getReceivedMessages() {
+        return receivedMessages;
+    }
+
+    public synchronized long getDuplicatedMessages() {
+        return duplicatedMessages;
+    }
+
+    public synchronized long getOutOfOrderMessages() {
+        return outOfOrderMessages;
+    }
+
+    public synchronized long getOutOfWindowMessages() {
+        return outOfWindowMessages;
+    }
+
+    /**
+     * @return number of ignored messages of other epochs
+     */
+    public synchronized long getStaleMessages() {
+        return staleMessages;
+    }
+
+    /**
+     * @return number of received messages that were neither duplicates nor arrived after the window slid past them
+     */
+    public synchronized long getDistinctMessages() {
+        return receivedMessages - duplicatedMessages - outOfWindowMessages;
+    }
+
+    /**
+     * @return the largest number of sequences of a single publisher that a message skipped ahead of the highest one received before it.
+     * Kept as the messages arrive, so a gap filled later by reordered messages still counts
+     */
+    public synchronized long getMaxGap() {
+        return maxGap;
+    }
+
+    /**
+     * Forgets everything received so far and tracks only the messages of the given epoch from now on
+     */
+    public synchronized void reset(int epoch) {
+        this.epoch = epoch;
+        publisherSequences.clear();
+        receivedMessages = 0;
+        duplicatedMessages = 0;
+        outOfOrderMessages = 0;
+        outOfWindowMessages = 0;
+        staleMessages = 0;
+        maxGap = 0;
+    }
+
+    private class PublisherSequence {
+        // every sequence below the base is either received or lost
+        private long base;
+        private long highest = -1;
+        private long skippedUpTo = -1;
+        private long[] window;
+        private int windowSize = WINDOW_SIZE;
+        private int windowReceived;
+
+        void onMessage(long sequence) {
+            if (sequence == base && windowReceived == 0) {
+                base++;
+                highest = sequence;
+                return;
+            }
+            if (sequence < base) {
+                if (sequence <= skippedUpTo) {
+                    outOfWindowMessages++;
+                    outOfOrderMessages++;
+                } else {
+                    duplicatedMessages++;
+                }
+                return;
+            }
+            if (sequence - base >= windowSize) {
+                if (windowSize < MAX_WINDOW_SIZE) {
+                    grow(Math.min(sequence - base + 1, MAX_WINDOW_SIZE));
+                }
+                if (sequence - base >= windowSize) {
+                    slide(sequence - windowSize + 1);
+                }
+            }
+            if (window == null) {
+                window = new long[windowSize / Long.SIZE];
+            }
+            int idx = (int) (sequence & (windowSize - 1));
+            long bit = 1L << idx;
+            if ((window[idx >>> 6] & bit) != 0) {
+                duplicatedMessages++;
+                return;
+            }
+            window[idx >>> 6] |= bit;
+            windowReceived++;
+            if (sequence < highest) {
+                outOfOrderMessages++;
+            } else {
+                maxGap = Math.max(maxGap, sequence - highest - 1);
+                highest = sequence;
+            }
+            advance();
+        }
+
+        private void advance() {
+            while (windowReceived > 0 && isReceived(base)) {
+                clear(base);
+                windowReceived--;
+                base++;
+            }
+            if (windowReceived == 0) {
+                window = null;
+                windowSize = WINDOW_SIZE;
+            }
+        }
+
+        // doubles the window until the given number of sequences from the base fits, keeping the received ones
+        private void grow(long size) {
+            int newSize = windowSize;
+            while (newSize < size) {
+                newSize <<= 1;
+            }
+            if (window != null) {
+                long[] newWindow = new long[newSize / Long.SIZE];
+                for (long sequence = base; sequence <= highest; sequence++) {
+                    if (isReceived(sequence)) {
+                        int idx = (int) (sequence & (newSize - 1));
+                        newWindow[idx >>> 6] |= 1L << idx;
+                    }
+                }
+                window = newWindow;
+            }
+            windowSize = newSize;
+        }
+
+        // moves the base to the new value, the not received sequences in between are lost
+        private void slide(long newBase) {
+            while (base < newBase && windowReceived > 0) {
+                if (isReceived(base)) {
+                    clear(base);
+                    windowReceived--;
+                }
+                base++;
+            }
+            if (base < newBase) {
+                base = newBase;
+            }
+            skippedUpTo = newBase - 1;
+        }
+
+        private boolean isReceived(long sequence) {
+            int idx = (int) (sequence & (windowSize - 1));
+            return window != null && (window[idx >>> 6] & (1L << idx)) != 0;
+        }
+
+        private void clear(long sequence) {
+            int idx = (int) (sequence & (windowSize - 1));
+            window[idx >>> 6] &= ~(1L << idx);
+        }
+    }
+}
@@ -28,6 +28,16 @@ public class TestClusterUtil {
         List<PreConnectedSubscriberInfo> preConnectedSubscriberInfos = new ArrayList<>();
         int currentSubscriberId = 0;
         for (SubscriberGroup subscriberGroup : testRunConfiguration.getSubscribersConfig()) {
+            if (subscriberGroup.isShared()) {
+                // all members of a shared subscription group run on the same node, so that the group can be checked as a whole
+                if (currentSubscriberId % testRunClusterConfig.getParallelTestsCount() == testRunClusterConfig.getSequentialNumber()) {
+                    for (int i = 0; i < subscriberGroup.getSubscribers(); i++) {
+                        preConnectedSubscriberInfos.add(new PreConnectedSubscriberInfo(subscriberGroup, i));
+                    }
+                }
+                currentSubscriberId += subscriberGroup.getSubscribers();
+                continue;
+            }
             for (int i = 0; i < subscriberGroup.getSubscribers(); i++) {
                 if (currentSubscriberId++ % testRunClusterConfig.getParallelTestsCount() == testRunClusterConfig.getSequentialNumber()) {
                     preConnectedSubscriberInfos.add(new PreConnectedSubscriberInfo(subscriberGroup, i));
@@ -0,0 +1,44 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.util;
+
+/**
+ * Parsing of the shared subscription filters, used by both the test configuration and the client
+ */
+public class TopicFilterUtil {
+
+    public static final String SHARED_SUBSCRIPTION_PREFIX = "$share/";
+
+    /**
+     * @return true if the filter is a shared subscription ($share/{ShareName}/{filter})
+     */
+    public static boolean isShared(String topicFilter) {
+        return topicFilter != null && topicFilter.startsWith(SHARED_SUBSCRIPTION_PREFIX);
+    }
+
+    /**
+     * @return the filter the topics are matched against, without the share name of a shared subscription
+     */
+    public static String stripSharePrefix(String topicFilter) {
+        if (isShared(topicFilter)) {
+            int filterStart = topicFilter.indexOf('/', SHARED_SUBSCRIPTION_PREFIX.length());
+            if (filterStart > 0) {
+                return topicFilter.substring(filterStart + 1);
+            }
+        }
+        return topicFilter;
+    }
+}
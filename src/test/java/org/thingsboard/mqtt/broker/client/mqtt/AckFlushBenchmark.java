@@ -0,0 +1,237 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import lombok.extern.slf4j.Slf4j;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * This simple class measures the cost of acknowledging QoS 1 messages on the subscriber side in a fan-in scenario:
+ * a local fake broker streams the messages of many publishers to a single subscriber in batches, and the subscriber
+ * acknowledges them either with a flush per PUBACK or with the flushes coalesced per socket read.
+ * Arguments: [messages] [batch size] [publishers] [payload size]
+ */
+@Slf4j
+public class AckFlushBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int WINDOW_BATCHES = 4;
+
+    private static volatile FanInRun currentRun;
+
+    public static void main(String[] args) throws Exception {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int publishers = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int payloadSize = args.length > 3 ? Integer.parseInt(args[3]) : 64;
+
+        ByteBuf payload = Unpooled.directBuffer(payloadSize).writeZero(payloadSize);
+        String[] topics = new String[publishers];
+        for (int i = 0; i < publishers; i++) {
+            topics[i] = "fan-in/publisher/" + i + "/telemetry";
+        }
+
+        EventLoopGroup brokerGroup = new NioEventLoopGroup(1);
+        EventLoopGroup clientGroup = new NioEventLoopGroup(1);
+        try {
+            Channel brokerChannel = new ServerBootstrap()
+                    .group(brokerGroup)
+                    .channel(NioServerSocketChannel.class)
+                    .childHandler(new ChannelInitializer<SocketChannel>() {
+                        @Override
+                        protected void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new MqttDecoder(), MqttEncoder.INSTANCE, new FanInBrokerHandler(currentRun));
+                        }
+                    })
+                    .bind("127.0.0.1", 0).sync().channel();
+            int port = ((InetSocketAddress) brokerChannel.localAddress()).getPort();
+            long clientThreadId = clientGroup.next().submit(() -> Thread.currentThread().getId()).get();
+            ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+            log.info("Fan-in of {} publishers to one subscriber: {} QoS 1 messages per round, {} messages per broker write, payload - {} bytes.",
+                    publishers, messages, batchSize, payloadSize);
+            for (int round = 0; round < ROUNDS; round++) {
+                for (boolean coalesce : new boolean[]{false, true}) {
+                    FanInRun run = new FanInRun(messages, batchSize, topics, payload);
+                    currentRun = run;
+                    MqttClientStats clientStats = new MqttClientStats();
+                    MqttClient client = createClient(coalesce, clientStats);
+                    client.setEventLoop(clientGroup);
+
+                    long cpuStart = threadMXBean.getThreadCpuTime(clientThreadId);
+                    long start = System.nanoTime();
+                    connect(client, port);
+                    if (!run.done.await(5, TimeUnit.MINUTES)) {
+                        throw new IllegalStateException("Round did not complete, acknowledged " + run.acked + " of " + messages);
+                    }
+                    long elapsedNanos = System.nanoTime() - start;
+                    long cpuNanos = threadMXBean.getThreadCpuTime(clientThreadId) - cpuStart;
+                    long socketFlushes = clientStats.getAndResetSocketFlushes();
+                    client.disconnectAndClose();
+
+                    double cpuNsPerMsg = (double) cpuNanos / messages;
+                    log.info("Round {}, {}: {} msg/s, subscriber CPU - {} ns/msg ({} msg/s per core), socket flushes per message - {}.", round,
+                            coalesce ? "coalesced ack flushes" : "flush per ack",
+                            String.format("%.0f", messages / (elapsedNanos / 1e9)), String.format("%.1f", cpuNsPerMsg),
+                            String.format("%.0f", 1e9 / cpuNsPerMsg), String.format("%.4f", (double) socketFlushes / messages));
+                }
+            }
+            brokerChannel.close().sync();
+        } finally {
+            clientGroup.shutdownGracefully().sync();
+            brokerGroup.shutdownGracefully().sync();
+            payload.release();
+        }
+    }
+
+    private static MqttClient createClient(boolean coalesceAckFlushes, MqttClientStats clientStats) {
+        MqttClientConfig config = new MqttClientConfig();
+        config.setClientId("fan-in-subscriber");
+        config.setProtocolVersion(MqttVersion.MQTT_5);
+        config.setReconnect(false);
+        config.setClientStats(clientStats);
+        config.setCoalesceAckFlushes(coalesceAckFlushes);
+        ReceivedMsgProcessor inlineProcessor = new ReceivedMsgProcessor() {
+            @Override
+            public void processIncomingMessage(MqttClient client, MqttPublishMessage message, BiConsumer<MqttPublishMessage, Long> msgProcessor) {
+                try {
+                    msgProcessor.accept(message, System.nanoTime());
+                } finally {
+                    message.payload().release();
+                }
+            }
+
+            @Override
+            public List<Integer> getQueueSizes() {
+                return List.of();
+            }
+        };
+        return MqttClient.create(config, (topic, payload, receivedTime) -> {
+        }, inlineProcessor, null);
+    }
+
+    private static void connect(MqttClient client, int port) throws InterruptedException {
+        CountDownLatch connected = new CountDownLatch(1);
+        client.connect(new ConnectCallback() {
+            @Override
+            public void onSuccess(MqttConnectResult connectResult) {
+                connected.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.error("Failed to connect to the fake broker", t);
+                connected.countDown();
+            }
+        }, "127.0.0.1", port);
+        connected.await();
+    }
+
+    private static class FanInRun {
+        private final int messages;
+        private final int batchSize;
+        private final String[] topics;
+        private final ByteBuf payload;
+        private final CountDownLatch done = new CountDownLatch(1);
+        // confined to the event loop of the broker
+        private int sent;
+        private volatile int acked;
+
+        private FanInRun(int messages, int batchSize, String[] topics, ByteBuf payload) {
+            this.messages = messages;
+            this.batchSize = batchSize;
+            this.topics = topics;
+            this.payload = payload;
+        }
+    }
+
+    /**
+     * Accepts the connection and streams QoS 1 messages in batches with a single flush per batch, as a broker forwarding
+     * the messages of many publishers does, keeping at most {@link #WINDOW_BATCHES} batches unacknowledged
+     */
+    private static class FanInBrokerHandler extends SimpleChannelInboundHandler<MqttMessage> {
+        private static final MqttFixedHeader PUBLISH_HEADER = new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0);
+
+        private final FanInRun run;
+
+        private FanInBrokerHandler(FanInRun run) {
+            this.run = run;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, MqttMessage msg) {
+            switch (msg.fixedHeader().messageType()) {
+                case CONNECT:
+                    ctx.writeAndFlush(MqttMessageBuilders.connAck()
+                            .returnCode(MqttConnectReturnCode.CONNECTION_ACCEPTED)
+                            .sessionPresent(false)
+                            .build());
+                    sendBatches(ctx);
+                    break;
+                case PUBACK:
+                    if (++run.acked == run.messages) {
+                        run.done.countDown();
+                    } else {
+                        sendBatches(ctx);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void sendBatches(ChannelHandlerContext ctx) {
+            while (run.sent < run.messages && run.sent - run.acked + run.batchSize <= WINDOW_BATCHES * run.batchSize) {
+                int batchEnd = Math.min(run.messages, run.sent + run.batchSize);
+                for (; run.sent < batchEnd; run.sent++) {
+                    String topic = run.topics[run.sent % run.topics.length];
+                    int packetId = run.sent % 65535 + 1;
+                    ctx.write(new MqttPublishMessage(PUBLISH_HEADER, new MqttPublishVariableHeader(topic, packetId), run.payload.retainedDuplicate()));
+                }
+                ctx.flush();
+            }
+        }
+    }
+}
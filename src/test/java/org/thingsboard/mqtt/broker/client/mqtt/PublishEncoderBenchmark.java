@@ -0,0 +1,109 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.mqtt.MqttConnectMessage;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageBuilders;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttVersion;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.function.IntFunction;
+
+/**
+ * This simple class compares the PUBLISH encoding of the generic MqttEncoder with the pre-encoded publish path.
+ * Arguments: [iterations] [payload size] [topic]
+ */
+@Slf4j
+public class PublishEncoderBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 5_000_000;
+        int payloadSize = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+        String topic = args.length > 2 ? args[2] : "tenant/42/site/7/device/12345/telemetry/temperature";
+
+        ByteBuf payload = Unpooled.directBuffer(payloadSize).writeZero(payloadSize);
+        MqttEncodedTopic encodedTopic = MqttEncodedTopic.of(topic, null, MqttVersion.MQTT_5);
+        MqttFixedHeader fixedHeader = new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0);
+
+        IntFunction<MqttPublishMessage> genericMessage = packetId ->
+                new MqttPublishMessage(fixedHeader, new MqttPublishVariableHeader(topic, packetId), payload.retainedDuplicate());
+        IntFunction<MqttPublishMessage> preEncodedMessage = packetId ->
+                new MqttPreEncodedPublishMessage(encodedTopic, MqttQoS.AT_LEAST_ONCE, false, packetId, payload.retainedDuplicate());
+
+        EmbeddedChannel genericChannel = createChannel(false);
+        EmbeddedChannel preEncodedChannel = createChannel(true);
+
+        ByteBuf genericBytes = encode(genericChannel, genericMessage.apply(1));
+        ByteBuf preEncodedBytes = encode(preEncodedChannel, preEncodedMessage.apply(1));
+        if (!ByteBufUtil.equals(genericBytes, preEncodedBytes)) {
+            throw new IllegalStateException("Encoded packets differ: " + ByteBufUtil.hexDump(genericBytes) + " vs " + ByteBufUtil.hexDump(preEncodedBytes));
+        }
+        log.info("Encoded packets are identical, packet size - {} bytes.", genericBytes.readableBytes());
+        genericBytes.release();
+        preEncodedBytes.release();
+
+        for (int round = 0; round < ROUNDS; round++) {
+            double genericNs = run(genericChannel, genericMessage, iterations);
+            double preEncodedNs = run(preEncodedChannel, preEncodedMessage, iterations);
+            log.info("Round {}: MqttEncoder - {} ns/msg, pre-encoded - {} ns/msg, speedup - {}x.", round,
+                    String.format("%.1f", genericNs), String.format("%.1f", preEncodedNs), String.format("%.2f", genericNs / preEncodedNs));
+        }
+
+        genericChannel.finishAndReleaseAll();
+        preEncodedChannel.finishAndReleaseAll();
+        payload.release();
+    }
+
+    private static EmbeddedChannel createChannel(boolean preEncoded) {
+        EmbeddedChannel channel = preEncoded ?
+                new EmbeddedChannel(MqttEncoder.INSTANCE, new MqttPreEncodedPublishEncoder(null, null)) :
+                new EmbeddedChannel(MqttEncoder.INSTANCE);
+        // the MqttEncoder takes the protocol version for the PUBLISH properties from the CONNECT it has written
+        MqttConnectMessage connectMessage = MqttMessageBuilders.connect()
+                .clientId("benchmark")
+                .protocolVersion(MqttVersion.MQTT_5)
+                .build();
+        encode(channel, connectMessage).release();
+        return channel;
+    }
+
+    private static ByteBuf encode(EmbeddedChannel channel, Object message) {
+        channel.writeOutbound(message);
+        return channel.readOutbound();
+    }
+
+    private static double run(EmbeddedChannel channel, IntFunction<MqttPublishMessage> messageFactory, int iterations) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            channel.writeOutbound(messageFactory.apply((i & 0xFFFF) + 1));
+            ByteBuf encoded = channel.readOutbound();
+            encoded.release();
+        }
+        return (double) (System.nanoTime() - start) / iterations;
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.client.mqtt;
+
+import com.google.common.collect.ImmutableSet;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * This simple class compares dispatching incoming topics by matching every subscription regex with the topic filter trie.
+ * Arguments: [subscriptions] [iterations]
+ */
+@Slf4j
+public class SubscriptionDispatchBenchmark {
+
+    private static final int ROUNDS = 5;
+    private static final int LEVELS = 5;
+    private static final int LEVEL_VALUES = 8;
+    private static final int TOPICS = 4096;
+
+    public static void main(String[] args) {
+        int subscriptionsCount = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+
+        Random random = new Random(42);
+        MqttHandler handler = (topic, payload, receivedTime) -> {
+        };
+        MqttSubscriptions subscriptions = new MqttSubscriptions();
+        List<RegexSubscription> allSubscriptions = new ArrayList<>();
+        for (int i = 0; i < subscriptionsCount; i++) {
+            String filter = randomFilter(random);
+            MqttSubscription subscription = new MqttSubscription(filter, handler, false);
+            subscriptions.put(filter, subscription);
+            allSubscriptions.add(new RegexSubscription(subscription));
+        }
+        String[] topics = new String[TOPICS];
+        for (int i = 0; i < TOPICS; i++) {
+            topics[i] = randomTopic(random);
+        }
+
+        long matches = 0;
+        for (String topic : topics) {
+            Set<MqttSubscription> byRegex = new HashSet<>();
+            for (RegexSubscription subscription : allSubscriptions) {
+                if (subscription.matches(topic)) {
+                    byRegex.add(subscription.subscription);
+                }
+            }
+            List<MqttSubscription> matched = new ArrayList<>();
+            subscriptions.collectMatching(topic, matched);
+            Set<MqttSubscription> byTrie = new HashSet<>(matched);
+            if (!byRegex.equals(byTrie)) {
+                throw new IllegalStateException("Matched subscriptions differ for " + topic + ": " + byRegex.size() + " vs " + byTrie.size());
+            }
+            matches += byTrie.size();
+        }
+        log.info("Matched subscriptions are identical, {} subscriptions, {} matches per topic on average.",
+                subscriptionsCount, String.format("%.2f", (double) matches / TOPICS));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            double regexNs = runRegex(allSubscriptions, topics, iterations);
+            double trieNs = runTrie(subscriptions, topics, iterations);
+            log.info("Round {}: regex - {} ns/msg, trie - {} ns/msg, speedup - {}x.", round,
+                    String.format("%.1f", regexNs), String.format("%.1f", trieNs), String.format("%.2f", regexNs / trieNs));
+        }
+    }
+
+    private static String randomFilter(Random random) {
+        StringBuilder filter = new StringBuilder("t");
+        for (int level = 1; level < LEVELS; level++) {
+            int kind = random.nextInt(10);
+            if (kind == 0 && level > 1) {
+                return filter.append("/#").toString();
+            }
+            filter.append('/').append(kind == 1 ? "+" : "v" + random.nextInt(LEVEL_VALUES));
+        }
+        return filter.toString();
+    }
+
+    private static String randomTopic(Random random) {
+        StringBuilder topic = new StringBuilder("t");
+        for (int level = 1; level < LEVELS; level++) {
+            topic.append("/v").append(random.nextInt(LEVEL_VALUES));
+        }
+        return topic.toString();
+    }
+
+    // the dispatch as it was done before the trie: a copy of all subscriptions and a regex match of each
+    private static double runRegex(List<RegexSubscription> allSubscriptions, String[] topics, int iterations) {
+        long matches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            String topic = topics[i & (TOPICS - 1)];
+            for (RegexSubscription subscription : ImmutableSet.copyOf(allSubscriptions)) {
+                if (subscription.matches(topic)) {
+                    matches++;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return matches < 0 ? 0 : (double) elapsed / iterations;
+    }
+
+    private static double runTrie(MqttSubscriptions subscriptions, String[] topics, int iterations) {
+        List<MqttSubscription> matched = new ArrayList<>();
+        long matches = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            subscriptions.collectMatching(topics[i & (TOPICS - 1)], matched);
+            matches += matched.size();
+            matched.clear();
+        }
+        long elapsed = System.nanoTime() - start;
+        return matches < 0 ? 0 : (double) elapsed / iterations;
+    }
+
+    // a subscription with the regex every subscription compiled before the trie
+    private static class RegexSubscription {
+        private final MqttSubscription subscription;
+        private final Pattern topicRegex;
+
+        RegexSubscription(MqttSubscription subscription) {
+            this.subscription = subscription;
+            this.topicRegex = Pattern.compile(subscription.getTopic().replace("+", "[^/]+").replace("#", ".+") + "$");
+        }
+
+        boolean matches(String topic) {
+            return topicRegex.matcher(topic).matches();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * Copyright © 2016-2024 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt.broker.util;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * This simple class checks {@link SequenceTracker} against a set-based reference on randomized streams with loss, duplication,
+ * reordering within the tracking window and late messages of the previous epoch, checks that every message is still accounted for once
+ * when the messages of a publisher are split between a receiver in time and one lagging beyond the window, and measures the cost of in-order tracking.
+ * Arguments: [rounds] [publishers] [messages per publisher]
+ */
+@Slf4j
+public class SequenceTrackerCheck {
+
+    private static final int MAX_DISPLACEMENT = 512;
+    private static final int MEMBER_LAG = 10_000;
+    private static final int IN_ORDER_MESSAGES = 50_000_000;
+
+    public static void main(String[] args) {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int publishers = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int messages = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+
+        Random random = new Random(42);
+        for (int round = 0; round < rounds; round++) {
+            checkRound(random, round, publishers, messages);
+            checkLaggingMemberRound(random, round, publishers, messages);
+        }
+        log.info("{} randomized rounds match the reference.", rounds);
+
+        SequenceTracker tracker = new SequenceTracker();
+        for (int warmUp = 0; warmUp < 3; warmUp++) {
+            tracker.reset(warmUp);
+            long start = System.nanoTime();
+            for (int i = 0; i < IN_ORDER_MESSAGES; i++) {
+                tracker.onMessage(warmUp, i & 15, i >>> 4);
+            }
+            log.info("In-order tracking: {} ns per message.", String.format("%.1f", (System.nanoTime() - start) / (double) IN_ORDER_MESSAGES));
+        }
+    }
+
+    private static void checkRound(Random random, int round, int publishers, int messages) {
+        double lossRatio = random.nextDouble() * 0.1;
+        double duplicateRatio = random.nextDouble() * 0.05;
+        double reorderRatio = random.nextDouble() * 0.1;
+
+        SequenceTracker tracker = new SequenceTracker();
+        // the previous epoch leaves a window in a state the current epoch must not inherit
+        tracker.reset(round);
+        tracker.onMessage(round, 0, 5);
+        int epoch = round + 1;
+        tracker.reset(epoch);
+
+        long expectedReceived = 0;
+        long expectedDuplicated = 0;
+        long expectedOutOfOrder = 0;
+        long expectedStale = 0;
+        long expectedMaxGap = 0;
+        for (int publisherId = 0; publisherId < publishers; publisherId++) {
+            List<Long> stream = createStream(random, messages, lossRatio, duplicateRatio, reorderRatio);
+            BitSet received = new BitSet(messages);
+            long highest = -1;
+            for (long sequence : stream) {
+                // late messages of the previous epoch far ahead of the current sequences
+                if (random.nextDouble() < 0.01) {
+                    tracker.onMessage(epoch - 1, publisherId, sequence + 100_000);
+                    expectedStale++;
+                }
+                tracker.onMessage(epoch, publisherId, sequence);
+                expectedReceived++;
+                if (received.get((int) sequence)) {
+                    expectedDuplicated++;
+                    continue;
+                }
+                received.set((int) sequence);
+                if (sequence < highest) {
+                    expectedOutOfOrder++;
+                } else {
+                    expectedMaxGap = Math.max(expectedMaxGap, sequence - highest - 1);
+                    highest = sequence;
+                }
+            }
+        }
+
+        check(round, "received", expectedReceived, tracker.getReceivedMessages());
+        check(round, "duplicated", expectedDuplicated, tracker.getDuplicatedMessages());
+        check(round, "out-of-order", expectedOutOfOrder, tracker.getOutOfOrderMessages());
+        check(round, "out-of-window", 0, tracker.getOutOfWindowMessages());
+        check(round, "stale", expectedStale, tracker.getStaleMessages());
+        check(round, "max gap", expectedMaxGap, tracker.getMaxGap());
+    }
+
+    private static void checkLaggingMemberRound(Random random, int round, int publishers, int messages) {
+        double lossRatio = random.nextDouble() * 0.1;
+        double duplicateRatio = random.nextDouble() * 0.05;
+
+        SequenceTracker tracker = new SequenceTracker();
+        tracker.reset(round);
+
+        long expectedReceived = 0;
+        long expectedDuplicated = 0;
+        long expectedDistinct = 0;
+        for (int publisherId = 0; publisherId < publishers; publisherId++) {
+            List<Long> inTime = new ArrayList<>();
+            List<Long> lagging = new ArrayList<>();
+            for (long sequence : createStream(random, messages, lossRatio, duplicateRatio, 0)) {
+                (random.nextBoolean() ? inTime : lagging).add(sequence);
+            }
+            // the lagging receiver starts once the other one is far ahead
+            List<Long> stream = new ArrayList<>(inTime.subList(0, Math.min(MEMBER_LAG, inTime.size())));
+            for (int i = MEMBER_LAG; i < Math.max(inTime.size(), MEMBER_LAG + lagging.size()); i++) {
+                if (i < inTime.size()) {
+                    stream.add(inTime.get(i));
+                }
+                if (i - MEMBER_LAG < lagging.size()) {
+                    stream.add(lagging.get(i - MEMBER_LAG));
+                }
+            }
+            BitSet received = new BitSet(messages);
+            for (long sequence : stream) {
+                tracker.onMessage(round, publisherId, sequence);
+                expectedReceived++;
+                if (received.get((int) sequence)) {
+                    expectedDuplicated++;
+                } else {
+                    received.set((int) sequence);
+                    expectedDistinct++;
+                }
+            }
+        }
+
+        // the copies beyond the window can not be told apart from the lost messages any more, but none is counted twice
+        check(round, "lagging member received", expectedReceived, tracker.getReceivedMessages());
+        checkAtMost(round, "lagging member duplicated", expectedDuplicated, tracker.getDuplicatedMessages());
+        checkAtMost(round, "lagging member distinct", expectedDistinct, tracker.getDistinctMessages());
+    }
+
+    /**
+     * @return sequences of a publisher with some of them lost, duplicated or delayed by less than the tracking window
+     */
+    private static List<Long> createStream(Random random, int messages, double lossRatio, double duplicateRatio, double reorderRatio) {
+        List<Long> stream = new ArrayList<>(messages);
+        for (long sequence = 0; sequence < messages; sequence++) {
+            if (random.nextDouble() < lossRatio) {
+                continue;
+            }
+            stream.add(sequence);
+            if (random.nextDouble() < duplicateRatio) {
+                stream.add(sequence);
+            }
+        }
+        for (int i = 0; i < stream.size(); i++) {
+            if (random.nextDouble() < reorderRatio) {
+                int j = Math.min(stream.size() - 1, i + 1 + random.nextInt(MAX_DISPLACEMENT / 2));
+                if (Math.abs(stream.get(i) - stream.get(j)) < MAX_DISPLACEMENT) {
+                    Collections.swap(stream, i, j);
+                }
+            }
+        }
+        return stream;
+    }
+
+    private static void checkAtMost(int round, String counter, long expectedMax, long actual) {
+        if (actual > expectedMax) {
+            throw new IllegalStateException("Round " + round + ": " + counter + " messages - expected at most " + expectedMax + ", tracked " + actual);
+        }
+    }
+
+    private static void check(int round, String counter, long expected, long actual) {
+        if (expected != actual) {
+            throw new IllegalStateException("Round " + round + ": " + counter + " messages - expected " + expected + ", tracked " + actual);
+        }
+    }
+}